@@ -7,7 +7,6 @@
  */
 package org.seedstack.maven;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -20,16 +19,29 @@ import java.util.List;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
 
 /**
  * Provides a common base for mojos that run SeedStack applications.
  */
 public abstract class AbstractExecutableMojo extends AbstractSeedStackMojo {
     private final IsolatedThreadGroup isolatedThreadGroup = new IsolatedThreadGroup("seed-app");
+    @Parameter(property = "startupTimeout", defaultValue = "0")
+    private long startupTimeout;
 
-    @SuppressFBWarnings(value = {"UW_UNCOND_WAIT", "WA_NOT_IN_LOOP"}, justification = "Cannot know when the "
-            + "application is started")
     protected void execute(Runnable runnable, boolean testMode) throws MojoExecutionException {
+        startApplication(runnable, testMode);
+        awaitStartup();
+    }
+
+    /**
+     * Launches the application in its own thread without waiting for its startup.
+     *
+     * @param runnable the runnable launching the application.
+     * @param testMode true to include test classes and resources in the classpath.
+     * @throws MojoExecutionException if the application cannot be launched.
+     */
+    protected void startApplication(Runnable runnable, boolean testMode) throws MojoExecutionException {
         File[] classPathFiles = getClassPathFiles(testMode);
 
         // Set the system property for proper detection of classpath
@@ -46,10 +58,24 @@ public abstract class AbstractExecutableMojo extends AbstractSeedStackMojo {
         // Create an isolated thread
         Thread bootstrapThread = new Thread(isolatedThreadGroup, runnable, "main");
         bootstrapThread.setContextClassLoader(classLoader);
+        getContext().getLifecycle().starting();
         bootstrapThread.start();
+    }
 
-        // Wait for the application to launch
-        getContext().waitForStartup();
+    /**
+     * Waits for the application to be started (or for the tool to be executed).
+     *
+     * @throws MojoExecutionException if the application failed to start or did not start in time.
+     */
+    protected void awaitStartup() throws MojoExecutionException {
+        AppLifecycle lifecycle = getContext().getLifecycle();
+        try {
+            lifecycle.await(lifecycle.getStartup(), startupTimeout);
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException("An exception occurred while executing SeedStack application", e);
+        }
 
         // Check for any uncaught exception
         synchronized (isolatedThreadGroup) {
@@ -68,6 +94,10 @@ public abstract class AbstractExecutableMojo extends AbstractSeedStackMojo {
         });
     }
 
+    ThreadGroup getApplicationThreadGroup() {
+        return isolatedThreadGroup;
+    }
+
     void waitForShutdown() {
         boolean found = true;
 
@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Lifecycle of the application run by a mojo. Each transition is timestamped and completes the future of the phase
+ * it ends, so callers can wait for startup or refresh regardless of when the phase actually ends. It is the single
+ * owner of refresh state: refreshes run one at a time and requests made while a refresh is running are coalesced into
+ * a single follow-up refresh, since a running kernel refresh cannot be safely interrupted.
+ */
+public class AppLifecycle {
+    private final Log log;
+    private final Map<State, Long> timestamps = new EnumMap<>(State.class);
+    private final CompletableFuture<Void> startup = new CompletableFuture<>();
+    private CompletableFuture<Void> refresh;
+    private CompletableFuture<Void> queuedRefresh;
+    private State state;
+
+    AppLifecycle(Log log) {
+        this.log = log;
+        transition(State.STARTING);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @param state the state.
+     * @return the last time the application entered this state in milliseconds, or -1 if it never did.
+     */
+    public synchronized long getTimestamp(State state) {
+        Long timestamp = timestamps.get(state);
+        return timestamp == null ? -1 : timestamp;
+    }
+
+    public CompletableFuture<Void> getStartup() {
+        return startup;
+    }
+
+    /**
+     * Marks the actual launch of the application, resetting the startup timestamp.
+     */
+    public synchronized void starting() {
+        if (state == State.STARTING) {
+            transition(State.STARTING);
+        }
+    }
+
+    public synchronized void started() {
+        if (state == State.STARTING) {
+            transition(State.STARTED);
+            log.info("Application started in " + elapsedSince(State.STARTING) + " ms");
+            startup.complete(null);
+        }
+    }
+
+    /**
+     * Requests an asynchronous refresh taking into account all changes made before the call.
+     *
+     * @param executor the executor running refreshes, which must run one task at a time.
+     * @param task     the actual refresh.
+     * @return the future completed when the refresh that covers this request ends.
+     * @throws IllegalStateException if the application is not started or is stopped.
+     */
+    public synchronized CompletableFuture<Void> requestRefresh(Executor executor, final RefreshTask task) {
+        if (state != State.STARTED && state != State.FAILED && state != State.REFRESHING || !startup.isDone()) {
+            throw new IllegalStateException("Cannot refresh application in state " + state);
+        }
+        if (queuedRefresh != null) {
+            // Not started yet, it will include this request
+            return queuedRefresh;
+        }
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    doRefresh(future, task);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Cannot refresh application, refresh executor is shut down", e);
+        }
+        queuedRefresh = future;
+        return future;
+    }
+
+    public synchronized void failed(Throwable throwable) {
+        State failedState = state;
+        if (failedState == State.STARTING || failedState == State.REFRESHING) {
+            transition(State.FAILED);
+            if (failedState == State.STARTING) {
+                startup.completeExceptionally(throwable);
+            } else {
+                refresh.completeExceptionally(throwable);
+            }
+        }
+    }
+
+    public synchronized void stopped() {
+        if (state != State.STOPPED) {
+            transition(State.STOPPED);
+            IllegalStateException stoppedException = new IllegalStateException("Application stopped");
+            startup.completeExceptionally(stoppedException);
+            if (refresh != null) {
+                refresh.completeExceptionally(stoppedException);
+            }
+            if (queuedRefresh != null) {
+                queuedRefresh.completeExceptionally(stoppedException);
+                queuedRefresh = null;
+            }
+        }
+    }
+
+    /**
+     * Waits for a phase of the lifecycle to end.
+     *
+     * @param phase   the future of the phase.
+     * @param timeout the maximum time to wait in milliseconds, 0 to wait indefinitely.
+     * @throws Exception the exception which made the phase fail, or a {@link MojoExecutionException} if the wait
+     *                   times out or is interrupted.
+     */
+    public void await(CompletableFuture<Void> phase, long timeout) throws Exception {
+        try {
+            if (timeout > 0) {
+                phase.get(timeout, TimeUnit.MILLISECONDS);
+            } else {
+                phase.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        } catch (TimeoutException e) {
+            throw new MojoExecutionException("Application still " + getState().name().toLowerCase(Locale.ENGLISH)
+                    + " after " + timeout + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for SeedStack application");
+        }
+    }
+
+    private void doRefresh(CompletableFuture<Void> future, RefreshTask task) {
+        synchronized (this) {
+            if (queuedRefresh == future) {
+                // From now on, new requests will queue a follow-up refresh
+                queuedRefresh = null;
+            }
+            if (future.isDone()) {
+                // Stopped in the meantime
+                return;
+            }
+            transition(State.REFRESHING);
+            refresh = future;
+        }
+        try {
+            task.refresh();
+            refreshed();
+        } catch (Throwable e) {
+            failed(e);
+        }
+    }
+
+    private synchronized void refreshed() {
+        if (state == State.REFRESHING) {
+            transition(State.STARTED);
+            log.info("Application refreshed in " + elapsedSince(State.REFRESHING) + " ms");
+            refresh.complete(null);
+        }
+    }
+
+    private void transition(State newState) {
+        state = newState;
+        timestamps.put(newState, System.currentTimeMillis());
+    }
+
+    private long elapsedSince(State previousState) {
+        return System.currentTimeMillis() - timestamps.get(previousState);
+    }
+
+    /**
+     * The actual refresh of the application, run by the lifecycle.
+     */
+    public interface RefreshTask {
+        void refresh() throws Exception;
+    }
+
+    public enum State {
+        STARTING,
+        STARTED,
+        REFRESHING,
+        FAILED,
+        STOPPED
+    }
+}
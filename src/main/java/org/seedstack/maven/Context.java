@@ -11,7 +11,6 @@ import java.io.File;
 import java.util.Locale;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.BuildPluginManager;
-import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 
@@ -32,6 +31,7 @@ public class Context {
     private final MavenProject mavenProject;
     private final MavenSession mavenSession;
     private final BuildPluginManager buildPluginManager;
+    private final AppLifecycle lifecycle;
 
     public Context(String[] args, Log log, File classesDirectory,
             File testClassesDirectory, MavenProject mavenProject, MavenSession mavenSession,
@@ -43,6 +43,7 @@ public class Context {
         this.mavenProject = mavenProject;
         this.mavenSession = mavenSession;
         this.buildPluginManager = buildPluginManager;
+        this.lifecycle = new AppLifecycle(log);
     }
 
     public String[] getArgs() {
@@ -73,20 +74,8 @@ public class Context {
         return buildPluginManager;
     }
 
-    public void notifyStartup() {
-        synchronized (this) {
-            notifyAll();
-        }
-    }
-
-    public void waitForStartup() throws MojoExecutionException {
-        synchronized (this) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                throw new MojoExecutionException("Interrupted while waiting for SeedStack application");
-            }
-        }
+    public AppLifecycle getLifecycle() {
+        return lifecycle;
     }
 
     public static boolean isWindows() {
@@ -7,8 +7,10 @@
  */
 package org.seedstack.maven;
 
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 
 /**
  * SeedStack utils.
@@ -16,6 +18,9 @@ import java.lang.reflect.Method;
 public final class SeedStackUtils {
     private static final String seedClassName = "org.seedstack.seed.core.Seed";
     static final String mainClassName = "org.seedstack.seed.core.SeedMain";
+    private static final String configListenerClassName = "org.seedstack.coffig.ConfigChangeListener";
+    private static final String configListenerRegistrationMethodName = "registerListener";
+    private static final String configListenerCallbackMethodName = "onChange";
 
     private SeedStackUtils() {
         // no instantiation allowed
@@ -85,6 +90,69 @@ public final class SeedStackUtils {
         }
     }
 
+    /**
+     * Registers a listener notified each time the configuration of the application is refreshed, through the
+     * Coffig change listener of the application base configuration.
+     *
+     * @param classLoader the class loader of the application.
+     * @param listener    the listener to notify.
+     * @return true if the listener was registered, false if the application does not support configuration listeners.
+     * @throws Exception if an error occurs during registration.
+     */
+    public static boolean addConfigListener(ClassLoader classLoader, final Runnable listener) throws Exception {
+        Object configuration;
+        try {
+            configuration = classLoader.loadClass(SeedStackUtils.seedClassName)
+                    .getMethod("baseConfiguration")
+                    .invoke(null);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return false;
+        } catch (Exception e) {
+            throw unwrapException(e);
+        }
+        if (configuration == null) {
+            return false;
+        }
+        final Class<?> listenerInterface;
+        final Method registrationMethod;
+        try {
+            listenerInterface = classLoader.loadClass(SeedStackUtils.configListenerClassName);
+            registrationMethod = configuration.getClass().getMethod(configListenerRegistrationMethodName,
+                    listenerInterface);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return false;
+        }
+        if (!listenerInterface.isInterface()) {
+            return false;
+        }
+        Object proxy = Proxy.newProxyInstance(classLoader, new Class<?>[]{listenerInterface},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getDeclaringClass() == Object.class) {
+                            switch (method.getName()) {
+                                case "equals":
+                                    return proxy == args[0];
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                default:
+                                    return "SeedStack Maven plugin configuration listener";
+                            }
+                        }
+                        if (configListenerCallbackMethodName.equals(method.getName())) {
+                            listener.run();
+                        }
+                        return null;
+                    }
+                });
+        try {
+            registrationMethod.invoke(configuration, proxy);
+        } catch (Exception e) {
+            throw unwrapException(e);
+        }
+        return true;
+    }
+
     private static Exception unwrapException(Exception e) {
         Exception unwrapped;
         if (e instanceof InvocationTargetException
@@ -9,26 +9,40 @@ package org.seedstack.maven;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Execute;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
+import org.seedstack.maven.classloader.ReloadUnit;
 import org.seedstack.maven.classloader.ReloadingClassLoader;
 import org.seedstack.maven.livereload.LRServer;
 import org.seedstack.maven.runnables.AppRunnable;
+import org.seedstack.maven.watcher.ChangeRouter;
 import org.seedstack.maven.watcher.DirectoryWatcher;
-import org.seedstack.maven.watcher.ResourceChangeListener;
-import org.seedstack.maven.watcher.SourceChangeListener;
+import org.seedstack.maven.watcher.NativeWatchBackend;
+import org.seedstack.maven.watcher.PollingWatchBackend;
+import org.seedstack.maven.watcher.WatchBackend;
 
 /**
  * Defines the run goal. This goal runs a SeedStack project.
@@ -38,38 +52,64 @@ import org.seedstack.maven.watcher.SourceChangeListener;
 @Execute(phase = LifecyclePhase.PROCESS_CLASSES)
 public class WatchMojo extends AbstractExecutableMojo {
     private static final int LIVE_RELOAD_PORT = 35729;
-    private DirectoryWatcher sourceWatcher;
-    private DirectoryWatcher resourceWatcher;
-    private Thread sourceWatcherThread;
-    private Thread resourceWatcherThread;
+    private static final String WATCH_DIRECTORY = "seedstack-watch";
+    @Parameter(property = "quietPeriod", defaultValue = "50")
+    private long quietPeriod;
+    @Parameter(property = "maxQuietPeriod", defaultValue = "400")
+    private long maxQuietPeriod;
+    @Parameter(property = "maxDelay", defaultValue = "3000")
+    private long maxDelay;
+    @Parameter(property = "watchBackend", defaultValue = "native")
+    private String watchBackend;
+    @Parameter(property = "pollInterval", defaultValue = "1000")
+    private long pollInterval;
+    @Parameter(property = "reloadUnit", defaultValue = "PACKAGE")
+    private ReloadUnit reloadUnit;
+    @Parameter(property = "hotSwap", defaultValue = "false")
+    private boolean hotSwap;
+    @Parameter(property = "configReloadTimeout", defaultValue = "2000")
+    private long configReloadTimeout;
+    @Parameter(property = "configFiles")
+    private List<String> configFiles;
+    private DirectoryWatcher watcher;
+    private Thread watcherThread;
     private List<String> compileSourceRoots;
     private ReloadingClassLoader reloadingClassLoader;
     private AppRunnable appRunnable;
     private LRServer lrServer;
+    private boolean liveReloadUnavailable;
+    private Map<String, String> components = Collections.emptyMap();
 
     @Override
     public void execute() throws MojoExecutionException {
         MavenProject mavenProject = getContext().getMavenProject();
         this.compileSourceRoots = Collections.unmodifiableList(mavenProject.getCompileSourceRoots());
 
-        setupSourceWatcher();
-
-        setupResourceWatcher(mavenProject);
+        // Register watched directories concurrently with application startup
+        ExecutorService registrationExecutor = createRegistrationExecutor();
+        List<Future<?>> registrations = new ArrayList<>();
+        try {
+            setupWatcher(mavenProject, registrationExecutor, registrations);
 
-        // Force config watching
-        System.setProperty("seedstack.config.config.watch", "true");
+            // Force config watching
+            System.setProperty("seedstack.config.config.watch", "true");
 
-        this.appRunnable = new AppRunnable(getContext());
-        execute(appRunnable, false);
+            this.appRunnable = new AppRunnable(getContext());
+            startApplication(appRunnable, false);
 
-        // Start LiveReload server
-        startLiveReload();
+            awaitRegistrations(registrations);
+            awaitStartup();
+        } catch (MojoExecutionException e) {
+            stopLiveReload();
+            throw e;
+        } finally {
+            registrationExecutor.shutdownNow();
+        }
 
         // Start watching sources and resources
-        sourceWatcherThread.start();
-        resourceWatcherThread.start();
+        watcherThread.start();
 
-        // Trigger initial LiveReload
+        // Trigger initial LiveReload, which starts the LiveReload server
         liveReload();
 
         // Wait for the app to end
@@ -78,22 +118,35 @@ public class WatchMojo extends AbstractExecutableMojo {
         // Stop the LiveReload server
         stopLiveReload();
 
-        // Stop the watchers
-        stopWatcher(sourceWatcher, sourceWatcherThread);
-        stopWatcher(resourceWatcher, resourceWatcherThread);
+        // Stop the watcher
+        stopWatcher();
     }
 
-    private void startLiveReload() {
-        try {
-            getLog().info("Starting LiveReload server on port " + LIVE_RELOAD_PORT);
-            lrServer = new LRServer(LIVE_RELOAD_PORT);
-            lrServer.start();
-        } catch (Exception e) {
-            getLog().error("Unable to start LiveReload server", e);
+    /**
+     * Starts the LiveReload server on first use, which is the initial LiveReload once the application has started:
+     * pages connecting to the server cannot be served before.
+     *
+     * @return the LiveReload server or null if it is unavailable.
+     */
+    private synchronized LRServer getLiveReloadServer() {
+        if (lrServer == null && !liveReloadUnavailable) {
+            try {
+                long startTime = System.currentTimeMillis();
+                LRServer server = new LRServer(LIVE_RELOAD_PORT);
+                server.start();
+                lrServer = server;
+                getLog().info("Started LiveReload server on port " + LIVE_RELOAD_PORT + " in "
+                        + (System.currentTimeMillis() - startTime) + " ms");
+            } catch (Exception e) {
+                getLog().error("Unable to start LiveReload server", e);
+                liveReloadUnavailable = true;
+            }
         }
+        return lrServer;
     }
 
-    private void stopLiveReload() {
+    private synchronized void stopLiveReload() {
+        liveReloadUnavailable = true;
         if (lrServer != null) {
             try {
                 getLog().info("Stopping LiveReload server");
@@ -104,64 +157,132 @@ public class WatchMojo extends AbstractExecutableMojo {
         }
     }
 
-    private void stopWatcher(DirectoryWatcher watcher, Thread watcherThread) {
+    private void stopWatcher() {
         watcher.stop();
         watcherThread.interrupt();
         try {
             watcherThread.join(1000);
         } catch (InterruptedException e) {
-            getLog().warn("Unable to stop a watcher", e);
+            getLog().warn("Unable to stop the watcher", e);
         }
     }
 
-    private void setupResourceWatcher(MavenProject mavenProject) throws MojoExecutionException {
+    private void setupWatcher(MavenProject mavenProject, ExecutorService registrationExecutor,
+            List<Future<?>> registrations) throws MojoExecutionException {
+        if (quietPeriod < 0) {
+            throw new MojoExecutionException("Invalid quietPeriod " + quietPeriod + ", it must be positive or zero");
+        }
+        // The quiet period bounds cannot be shorter than the quiet period itself
+        long effectiveMaxQuietPeriod = Math.max(maxQuietPeriod, quietPeriod);
+        long effectiveMaxDelay = Math.max(maxDelay, quietPeriod);
+        if (effectiveMaxQuietPeriod != maxQuietPeriod || effectiveMaxDelay != maxDelay) {
+            getLog().warn("Raising maxQuietPeriod to " + effectiveMaxQuietPeriod + " ms and maxDelay to "
+                    + effectiveMaxDelay + " ms to match quietPeriod of " + quietPeriod + " ms");
+        }
+
         try {
-            this.resourceWatcher = new DirectoryWatcher(getLog(), new ResourceChangeListener(this, getContext()));
+            this.watcher = new DirectoryWatcher(getLog(), new ChangeRouter(this, getContext()),
+                    createWatchBackend(), getIndexFile(), quietPeriod, effectiveMaxQuietPeriod, effectiveMaxDelay);
         } catch (IOException e) {
-            throw new MojoExecutionException("Unable to create resource watcher", e);
+            throw new MojoExecutionException("Unable to create watcher", e);
+        }
+
+        for (String sourceRoot : compileSourceRoots) {
+            File file = new File(sourceRoot);
+            if (file.isDirectory()) {
+                getLog().info("Will watch source directory " + file.getPath());
+                registrations.add(registerDirectory(registrationExecutor, file, "source"));
+            }
         }
+
         for (Resource resource : mavenProject.getResources()) {
             File file = new File(resource.getDirectory());
             if (file.isDirectory()) {
                 getLog().info("Will watch resource directory " + file.getPath());
-                try {
-                    this.resourceWatcher.watchRecursively(file.toPath());
-                } catch (IOException e) {
-                    throw new MojoExecutionException("Unable to watch resource directory "
-                            + file.getAbsolutePath(), e);
-                }
+                registrations.add(registerDirectory(registrationExecutor, file, "resource"));
             }
         }
-        this.resourceWatcherThread = new Thread(this.resourceWatcher, "resource-watcher");
+
+        this.watcherThread = new Thread(this.watcher, "watcher");
     }
 
-    private void setupSourceWatcher() throws MojoExecutionException {
-        try {
-            this.sourceWatcher = new DirectoryWatcher(getLog(), new SourceChangeListener(this, getContext()));
-        } catch (IOException e) {
-            throw new MojoExecutionException("Unable to create source watcher", e);
-        }
+    private ExecutorService createRegistrationExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "watch-registration-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
 
-        for (String sourceRoot : compileSourceRoots) {
-            File file = new File(sourceRoot);
-            if (file.isDirectory()) {
-                getLog().info("Will watch source directory " + file.getPath());
+    private Future<?> registerDirectory(ExecutorService registrationExecutor, final File directory,
+            final String type) {
+        return registrationExecutor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws MojoExecutionException {
                 try {
-                    this.sourceWatcher.watchRecursively(file.toPath());
+                    watcher.watchRecursively(directory.toPath());
                 } catch (IOException e) {
-                    throw new MojoExecutionException("Unable to watch source directory " + file.getAbsolutePath(), e);
+                    throw new MojoExecutionException("Unable to watch " + type + " directory "
+                            + directory.getAbsolutePath(), e);
                 }
+                return null;
             }
+        });
+    }
+
+    private void awaitRegistrations(List<Future<?>> registrations) throws MojoExecutionException {
+        long startTime = System.currentTimeMillis();
+        for (Future<?> registration : registrations) {
+            try {
+                registration.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while registering watched directories", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof MojoExecutionException) {
+                    throw (MojoExecutionException) cause;
+                }
+                throw new MojoExecutionException("Unable to register watched directories", cause);
+            }
+        }
+        getLog().debug("Waited " + (System.currentTimeMillis() - startTime)
+                + " ms for watched directories registration after application launch");
+    }
+
+    private WatchBackend createWatchBackend() throws IOException, MojoExecutionException {
+        if ("native".equals(watchBackend)) {
+            return new NativeWatchBackend();
+        } else if ("polling".equals(watchBackend)) {
+            return new PollingWatchBackend(pollInterval);
+        } else {
+            throw new MojoExecutionException("Unknown watch backend '" + watchBackend
+                    + "', supported backends are 'native' and 'polling'");
         }
-        this.sourceWatcherThread = new Thread(this.sourceWatcher, "source-watcher");
+    }
+
+    private File getIndexFile() {
+        return new File(new File(getContext().getMavenProject().getBuild().getDirectory(), WATCH_DIRECTORY),
+                "fingerprints.idx");
     }
 
     @Override
     URLClassLoader createClassLoader(final URL[] classPathUrls) {
         if (reloadingClassLoader == null) {
+            final URL[] reloadableUrls;
+            try {
+                reloadableUrls = new URL[]{getContext().getClassesDirectory().toURI().toURL()};
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException("Unable to resolve classes directory URL", e);
+            }
             reloadingClassLoader = AccessController.doPrivileged(new PrivilegedAction<ReloadingClassLoader>() {
                 public ReloadingClassLoader run() {
-                    return new ReloadingClassLoader(getLog(), classPathUrls, compileSourceRoots);
+                    return new ReloadingClassLoader(getLog(), classPathUrls, reloadableUrls,
+                            compileSourceRoots, reloadUnit, components);
                 }
             });
         }
@@ -169,18 +290,64 @@ public class WatchMojo extends AbstractExecutableMojo {
     }
 
     public void liveReload() {
-        if (lrServer != null) {
-            getLog().info("Triggering LiveReload");
+        liveReload(Collections.singleton("/"));
+    }
+
+    public void liveReload(Set<String> paths) {
+        LRServer server = getLiveReloadServer();
+        if (server != null) {
+            getLog().info("Triggering LiveReload of " + (paths.size() == 1 ? paths.iterator().next()
+                    : paths.size() + " paths"));
             try {
-                lrServer.notifyChange("/");
+                server.notifyChanges(paths);
             } catch (Exception e) {
                 getLog().warn("Error triggering LiveReload", e);
             }
         }
     }
 
-    public void invalidateClasses(Set<String> classNamesToInvalidate) {
-        reloadingClassLoader.invalidateClasses(classNamesToInvalidate);
+    public ReloadUnit getReloadUnit() {
+        return reloadUnit;
+    }
+
+    public boolean isHotSwap() {
+        return hotSwap;
+    }
+
+    public long getConfigReloadTimeout() {
+        return configReloadTimeout;
+    }
+
+    public List<String> getConfigFiles() {
+        return configFiles;
+    }
+
+    public ClassLoader getApplicationClassLoader() {
+        return reloadingClassLoader;
+    }
+
+    public Class<?> getLoadedSourceClass(String className) {
+        return reloadingClassLoader.getLoadedSourceClass(className);
+    }
+
+    public void addSourceClass(String className, String sourceRoot) {
+        reloadingClassLoader.addSourceClass(className, sourceRoot);
+    }
+
+    public void removeSourceClass(String className) {
+        reloadingClassLoader.removeSourceClass(className);
+    }
+
+    public Set<String> invalidateClasses(Set<String> classNamesToInvalidate) {
+        return reloadingClassLoader.invalidateClasses(classNamesToInvalidate);
+    }
+
+    public Set<String> updateComponents(Map<String, String> components) {
+        this.components = components;
+        if (reloadingClassLoader == null) {
+            return Collections.emptySet();
+        }
+        return reloadingClassLoader.updateComponents(components);
     }
 
     public void invalidateClassesFromPackage(String aPackage) {
@@ -193,5 +360,6 @@ public class WatchMojo extends AbstractExecutableMojo {
 
     public void refresh() throws Exception {
         appRunnable.refresh();
+        reloadingClassLoader.afterRefresh(getApplicationThreadGroup());
     }
 }
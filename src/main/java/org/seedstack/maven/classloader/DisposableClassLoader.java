@@ -7,14 +7,21 @@
  */
 package org.seedstack.maven.classloader;
 
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 class DisposableClassLoader extends URLClassLoader {
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
     private final ReloadingClassLoader reloadingClassLoader;
-    private final Set<String> names = new HashSet<>();
+    private final Set<String> names = ConcurrentHashMap.newKeySet();
 
     DisposableClassLoader(ReloadingClassLoader reloadingClassLoader, URL[] urLs) {
         super(urLs, null);
@@ -25,6 +32,14 @@ class DisposableClassLoader extends URLClassLoader {
         names.add(name);
     }
 
+    Class<?> getLoadedClass(String name) {
+        return findLoadedClass(name);
+    }
+
+    Set<String> getNames() {
+        return new HashSet<>(names);
+    }
+
     @Override
     public Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
         if (this.names.contains(name)) {
@@ -48,4 +63,15 @@ class DisposableClassLoader extends URLClassLoader {
             return reloadingClassLoader.loadClass(name, resolve);
         }
     }
+
+    @Override
+    public URL getResource(String name) {
+        // Only reloadable classes are searched locally, resources honor the full classpath order
+        return reloadingClassLoader.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        return reloadingClassLoader.getResources(name);
+    }
 }
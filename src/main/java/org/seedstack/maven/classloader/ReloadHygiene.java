@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.classloader;
+
+import java.beans.Introspector;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Tracks disposed class loaders until they are garbage collected, clears well-known references that would keep them
+ * reachable and reports the ones that fail to unload.
+ */
+class ReloadHygiene {
+    private static final int LEAK_THRESHOLD = 3;
+    private static final String JACKSON_TYPE_FACTORY = "com.fasterxml.jackson.databind.type.TypeFactory";
+    private final Log log;
+    private final ReferenceQueue<DisposableClassLoader> referenceQueue = new ReferenceQueue<>();
+    private final Set<DisposedReference> pendingReferences = ConcurrentHashMap.newKeySet();
+    private final Map<DisposableClassLoader, DisposedReference> disposedClassLoaders = new WeakHashMap<>();
+    private int refreshCount;
+
+    ReloadHygiene(Log log) {
+        this.log = log;
+    }
+
+    synchronized void dispose(DisposableClassLoader classLoader, String unit, long generation) {
+        DisposedReference reference = new DisposedReference(classLoader, referenceQueue, unit, generation,
+                refreshCount);
+        pendingReferences.add(reference);
+        disposedClassLoaders.put(classLoader, reference);
+    }
+
+    synchronized void afterRefresh(ClassLoader replacement, ThreadGroup applicationThreadGroup,
+            int activeClassLoaders) {
+        refreshCount++;
+        clearThreadContextClassLoaders(replacement, applicationThreadGroup);
+        clearCaches(replacement);
+        expungeUnloaded();
+        reportLeaks(applicationThreadGroup);
+        reportUsage(activeClassLoaders);
+    }
+
+    private void clearThreadContextClassLoaders(ClassLoader replacement, ThreadGroup applicationThreadGroup) {
+        for (Thread thread : getThreads(applicationThreadGroup)) {
+            if (disposedClassLoaders.containsKey(thread.getContextClassLoader())) {
+                log.debug("Resetting context class loader of thread " + thread.getName());
+                thread.setContextClassLoader(replacement);
+            }
+        }
+    }
+
+    private void clearCaches(ClassLoader replacement) {
+        for (DisposableClassLoader classLoader : new ArrayList<>(disposedClassLoaders.keySet())) {
+            ResourceBundle.clearCache(classLoader);
+        }
+        Introspector.flushCaches();
+        try {
+            Class<?> typeFactoryClass = Class.forName(JACKSON_TYPE_FACTORY, false, replacement);
+            Object typeFactory = typeFactoryClass.getMethod("defaultInstance").invoke(null);
+            typeFactoryClass.getMethod("clearCache").invoke(typeFactory);
+        } catch (ClassNotFoundException e) {
+            // Jackson is not used by the application
+        } catch (Exception | LinkageError e) {
+            log.debug("Unable to clear Jackson type cache", e);
+        }
+    }
+
+    private void expungeUnloaded() {
+        Reference<? extends DisposableClassLoader> reference;
+        while ((reference = referenceQueue.poll()) != null) {
+            pendingReferences.remove(reference);
+        }
+    }
+
+    private void reportLeaks(ThreadGroup applicationThreadGroup) {
+        Map<Long, Set<String>> leakedUnits = new TreeMap<>();
+        for (DisposedReference reference : pendingReferences) {
+            if (!reference.reported && refreshCount - reference.disposedAt >= LEAK_THRESHOLD) {
+                reference.reported = true;
+                Set<String> units = leakedUnits.get(reference.generation);
+                if (units == null) {
+                    leakedUnits.put(reference.generation, units = new TreeSet<>());
+                }
+                units.add(reference.unit);
+            }
+        }
+        if (leakedUnits.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Long, Set<String>> entry : leakedUnits.entrySet()) {
+            log.warn("Class loader(s) disposed in generation " + entry.getKey() + " still not unloaded after "
+                    + LEAK_THRESHOLD + " refreshes, possible leak of " + entry.getValue());
+        }
+        // Only roots that can be found without a heap dump are reported
+        boolean rootFound = false;
+        for (Thread thread : getThreads(applicationThreadGroup)) {
+            DisposedReference byClass = disposedClassLoaders.get(thread.getClass().getClassLoader());
+            if (byClass != null && byClass.reported) {
+                rootFound = true;
+                log.warn("Thread " + thread.getName() + " is an instance of " + thread.getClass().getName()
+                        + " from disposed unit " + byClass.unit + " and is still running");
+            }
+            DisposedReference byContext = disposedClassLoaders.get(thread.getContextClassLoader());
+            if (byContext != null && byContext.reported) {
+                rootFound = true;
+                log.warn("Thread " + thread.getName() + " has disposed unit " + byContext.unit
+                        + " as context class loader");
+            }
+        }
+        if (!rootFound) {
+            log.warn("No leaking thread found, take a heap dump (jmap -dump:live) and look for paths from GC "
+                    + "roots to " + DisposableClassLoader.class.getName() + " instances");
+        }
+    }
+
+    private void reportUsage(int activeClassLoaders) {
+        long metaspaceUsed = -1;
+        for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(memoryPoolMXBean.getName())) {
+                metaspaceUsed = memoryPoolMXBean.getUsage().getUsed();
+            }
+        }
+        ClassLoadingMXBean classLoadingMXBean = ManagementFactory.getClassLoadingMXBean();
+        log.info(String.format("Class loaders: %d active, %d awaiting unload; %d classes loaded (%d unloaded)%s",
+                activeClassLoaders,
+                pendingReferences.size(),
+                classLoadingMXBean.getLoadedClassCount(),
+                classLoadingMXBean.getUnloadedClassCount(),
+                metaspaceUsed < 0 ? "" : String.format("; metaspace %.1f MB", metaspaceUsed / 1048576.0)));
+    }
+
+    private List<Thread> getThreads(ThreadGroup threadGroup) {
+        if (threadGroup == null) {
+            return Collections.emptyList();
+        }
+        Thread[] threads;
+        int count;
+        int size = threadGroup.activeCount() + 1;
+        do {
+            size *= 2;
+            threads = new Thread[size];
+            count = threadGroup.enumerate(threads, true);
+        } while (count == size);
+        return Arrays.asList(threads).subList(0, count);
+    }
+
+    private static class DisposedReference extends PhantomReference<DisposableClassLoader> {
+        private final String unit;
+        private final long generation;
+        private final int disposedAt;
+        private volatile boolean reported;
+
+        DisposedReference(DisposableClassLoader classLoader, ReferenceQueue<DisposableClassLoader> queue,
+                String unit, long generation, int disposedAt) {
+            super(classLoader, queue);
+            this.unit = unit;
+            this.generation = generation;
+            this.disposedAt = disposedAt;
+        }
+    }
+}
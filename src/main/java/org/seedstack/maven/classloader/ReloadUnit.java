@@ -0,0 +1,30 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.classloader;
+
+/**
+ * Granularity at which project classes are grouped in disposable class loaders, thus reloaded together.
+ */
+public enum ReloadUnit {
+    /**
+     * One class loader per top-level class.
+     */
+    CLASS,
+    /**
+     * One class loader per package, which preserves package-private access between classes of the same package.
+     */
+    PACKAGE,
+    /**
+     * One class loader per source root.
+     */
+    SOURCE_ROOT,
+    /**
+     * One class loader per strongly connected component of the class dependency graph.
+     */
+    COMPONENT
+}
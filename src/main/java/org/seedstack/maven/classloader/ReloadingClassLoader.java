@@ -10,112 +10,281 @@ package org.seedstack.maven.classloader;
 import org.apache.maven.plugin.logging.Log;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.AccessControlContext;
 import java.security.AccessController;
-import java.security.PrivilegedExceptionAction;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.security.PrivilegedAction;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ReloadingClassLoader extends URLClassLoader {
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
     private final AccessControlContext acc = AccessController.getContext();
-    private final Map<String, DisposableClassLoader> classLoaders = new HashMap<>();
+    private final AtomicReference<Generation> generation = new AtomicReference<>(
+            new Generation(0, new ConcurrentHashMap<>()));
+    private final Object invalidationLock = new Object();
+    private final ReloadHygiene reloadHygiene;
     private final Log log;
-    private final List<String> sourceRoots;
+    private final URL[] reloadableUrls;
+    private final ReloadUnit reloadUnit;
+    private final Map<String, String> sourceClasses = new ConcurrentHashMap<>();
+    private volatile Map<String, String> components;
 
-    public ReloadingClassLoader(Log log, URL[] urls, List<String> sourceRoots) {
+    public ReloadingClassLoader(Log log, URL[] urls, URL[] reloadableUrls, List<String> sourceRoots,
+            ReloadUnit reloadUnit, Map<String, String> components) {
         super(urls);
         this.log = log;
-        this.sourceRoots = sourceRoots;
+        this.reloadHygiene = new ReloadHygiene(log);
+        this.reloadableUrls = reloadableUrls.clone();
+        this.reloadUnit = reloadUnit;
+        this.components = components;
+        long startTime = System.currentTimeMillis();
+        for (String sourceRoot : sourceRoots) {
+            indexSourceRoot(new File(sourceRoot));
+        }
+        log.debug("Indexed " + sourceClasses.size() + " source class(es) in "
+                + (System.currentTimeMillis() - startTime) + " ms, reloading them by " + reloadUnit);
     }
 
     @Override
     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-        if (isClassInSourceRoots(name)) {
-            DisposableClassLoader disposableClassLoader;
-            synchronized (classLoaders) {
-                String strippedName = stripInnerClass(name);
-                disposableClassLoader = classLoaders.get(strippedName);
-                if (disposableClassLoader == null) {
-                    classLoaders.put(strippedName, disposableClassLoader = createDisposableClassLoader(name));
-                } else {
-                    disposableClassLoader.addName(name);
-                }
-            }
+        String topLevelName = stripInnerClass(name);
+        if (sourceClasses.containsKey(topLevelName)) {
+            DisposableClassLoader disposableClassLoader = getDisposableClassLoader(getUnit(topLevelName));
+            disposableClassLoader.addName(name);
             return disposableClassLoader.loadClass(name, resolve);
         } else {
             return super.loadClass(name, resolve);
         }
     }
 
-    private boolean isClassInSourceRoots(String name) {
-        String sourceFile = stripInnerClass(name);
-        sourceFile = sourceFile.replace('.', '/') + ".java";
-        for (String sourceRoot : sourceRoots) {
-            if (new File(sourceRoot, sourceFile).exists()) {
-                return true;
+    /**
+     * Returns the current version of a project class if it has already been loaded.
+     *
+     * @param name the fully qualified name of the class.
+     * @return the class or null if it is not loaded yet.
+     */
+    public Class<?> getLoadedSourceClass(String name) {
+        String topLevelName = stripInnerClass(name);
+        if (sourceClasses.containsKey(topLevelName)) {
+            DisposableClassLoader disposableClassLoader = generation.get().classLoaders.get(getUnit(topLevelName));
+            if (disposableClassLoader != null) {
+                return disposableClassLoader.getLoadedClass(name);
             }
         }
-        return false;
+        return null;
     }
 
-    public void invalidateClasses(Set<String> classNamesToInvalidate) {
-        synchronized (classLoaders) {
-            for (String classNameToInvalidate : classNamesToInvalidate) {
-                String normalizedClassName = classNameToInvalidate.replace('/', '.');
-                normalizedClassName = stripInnerClass(normalizedClassName);
-                if (classLoaders.remove(normalizedClassName) != null) {
-                    log.debug("Class " + classNameToInvalidate + " will be reloaded on next access");
-                }
-            }
+    /**
+     * Declares a class whose source file has been created in a source root, so it gets loaded by a disposable class
+     * loader.
+     *
+     * @param className  the fully qualified name of the top-level class.
+     * @param sourceRoot the source root containing the class.
+     */
+    public void addSourceClass(String className, String sourceRoot) {
+        sourceClasses.put(className, canonicalize(new File(sourceRoot)));
+    }
+
+    /**
+     * Declares a class whose source file has been removed from the source roots.
+     *
+     * @param className the fully qualified name of the top-level class.
+     */
+    public void removeSourceClass(String className) {
+        sourceClasses.remove(className);
+    }
+
+    /**
+     * Invalidates the reload units of the given classes.
+     *
+     * @param classNamesToInvalidate the classes to invalidate.
+     * @return the names of the classes that were loaded by the invalidated units.
+     */
+    public Set<String> invalidateClasses(Set<String> classNamesToInvalidate) {
+        Set<String> units = new HashSet<>();
+        for (String classNameToInvalidate : classNamesToInvalidate) {
+            String normalizedClassName = classNameToInvalidate.replace('/', '.');
+            normalizedClassName = stripInnerClass(normalizedClassName);
+            units.add(getUnit(normalizedClassName));
         }
+        return invalidateUnits(units);
     }
 
     public void invalidateClassesFromPackage(String aPackage) {
-        synchronized (classLoaders) {
-            Iterator<String> iterator = classLoaders.keySet().iterator();
-            while (iterator.hasNext()) {
-                String className = iterator.next();
+        Set<String> units = new HashSet<>();
+        for (Map.Entry<String, DisposableClassLoader> entry : generation.get().classLoaders.entrySet()) {
+            for (String className : entry.getValue().getNames()) {
                 if (className.startsWith(aPackage)) {
-                    iterator.remove();
-                    log.debug("Class " + className + " will be reloaded on next access");
+                    units.add(entry.getKey());
+                    break;
                 }
             }
         }
+        invalidateUnits(units);
     }
 
     public void invalidateAllClasses() {
-        synchronized (classLoaders) {
-            classLoaders.clear();
-            log.debug("All classes will be reloaded on next access");
+        synchronized (invalidationLock) {
+            Generation current = generation.get();
+            generation.set(new Generation(current.number + 1, new ConcurrentHashMap<>()));
+            for (Map.Entry<String, DisposableClassLoader> entry : current.classLoaders.entrySet()) {
+                reloadHygiene.dispose(entry.getValue(), entry.getKey(), current.number);
+            }
+            log.debug("All classes will be reloaded on next access (generation " + (current.number + 1) + ")");
+        }
+    }
+
+    /**
+     * Updates the strongly connected components used by the {@link ReloadUnit#COMPONENT} reload unit. Units of the
+     * classes which changed component are invalidated.
+     *
+     * @param newComponents the representative class of each class component.
+     * @return the names of the classes that were loaded by the invalidated units.
+     */
+    public Set<String> updateComponents(Map<String, String> newComponents) {
+        synchronized (invalidationLock) {
+            Map<String, String> oldComponents = components;
+            Set<String> classNames = new HashSet<>(oldComponents.keySet());
+            classNames.addAll(newComponents.keySet());
+            Set<String> units = new HashSet<>();
+            for (String className : classNames) {
+                String oldComponent = oldComponents.get(className);
+                String newComponent = newComponents.get(className);
+                if (oldComponent == null ? newComponent != null : !oldComponent.equals(newComponent)) {
+                    units.add(oldComponent == null ? className : oldComponent);
+                    units.add(newComponent == null ? className : newComponent);
+                }
+            }
+            components = newComponents;
+            return invalidateUnits(units);
         }
     }
 
-    private DisposableClassLoader createDisposableClassLoader(final String name) throws ClassNotFoundException {
-        final DisposableClassLoader result;
+    /**
+     * Clears known references to disposed class loaders after the application has been refreshed, then reports the
+     * disposed class loaders which fail to unload along with class loading statistics.
+     *
+     * @param applicationThreadGroup the thread group of the application.
+     */
+    public void afterRefresh(ThreadGroup applicationThreadGroup) {
+        reloadHygiene.afterRefresh(this, applicationThreadGroup, generation.get().classLoaders.size());
+    }
+
+    private Set<String> invalidateUnits(Set<String> units) {
+        Set<String> invalidated = new HashSet<>();
+        synchronized (invalidationLock) {
+            Generation current = generation.get();
+            ConcurrentMap<String, DisposableClassLoader> survivors = new ConcurrentHashMap<>(current.classLoaders);
+            for (String unit : units) {
+                DisposableClassLoader disposableClassLoader = survivors.remove(unit);
+                if (disposableClassLoader != null) {
+                    reloadHygiene.dispose(disposableClassLoader, unit, current.number);
+                    invalidated.addAll(disposableClassLoader.getNames());
+                    log.debug("Classes of " + unit + " will be reloaded on next access");
+                }
+            }
+            if (!invalidated.isEmpty()) {
+                Generation next = new Generation(current.number + 1, survivors);
+                generation.set(next);
+                log.debug("Switched to class loader generation " + next.number + " with " + survivors.size()
+                        + " retained unit(s)");
+            }
+        }
+        return invalidated;
+    }
+
+    private DisposableClassLoader getDisposableClassLoader(String unit) {
+        DisposableClassLoader disposableClassLoader = generation.get().classLoaders.get(unit);
+        if (disposableClassLoader == null) {
+            // Created under the invalidation lock so a concurrent generation switch cannot lose it
+            synchronized (invalidationLock) {
+                disposableClassLoader = generation.get().classLoaders
+                        .computeIfAbsent(unit, this::createDisposableClassLoader);
+            }
+        }
+        return disposableClassLoader;
+    }
+
+    private String getUnit(String topLevelName) {
+        String unit = null;
+        switch (reloadUnit) {
+            case PACKAGE:
+                int packageIndex = topLevelName.lastIndexOf('.');
+                unit = packageIndex == -1 ? "" : topLevelName.substring(0, packageIndex);
+                break;
+            case SOURCE_ROOT:
+                unit = sourceClasses.get(topLevelName);
+                break;
+            case COMPONENT:
+                unit = components.get(topLevelName);
+                break;
+            default:
+                break;
+        }
+        return unit == null ? topLevelName : unit;
+    }
+
+    private void indexSourceRoot(File sourceRootFile) {
+        final Path sourceRoot = sourceRootFile.toPath();
+        if (!Files.isDirectory(sourceRoot)) {
+            return;
+        }
+        final String canonicalSourceRoot = canonicalize(sourceRootFile);
         try {
-            result = AccessController.doPrivileged(
-                    new PrivilegedExceptionAction<DisposableClassLoader>() {
-                        public DisposableClassLoader run() {
-                            log.debug("Creating a disposable class loader for " + name);
-                            // TODO: could be optimized by avoid giving all URLs to the disposable classloader
-                            // (only the one which effectively contains the class)
-                            DisposableClassLoader disposableClassLoader = new DisposableClassLoader(ReloadingClassLoader.this, getURLs());
-                            disposableClassLoader.addName(name);
-                            return disposableClassLoader;
-                        }
-                    }, acc);
-        } catch (java.security.PrivilegedActionException pae) {
-            throw (ClassNotFoundException) pae.getException();
+            Files.walkFileTree(sourceRoot, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String relativePath = sourceRoot.relativize(file).toString();
+                    if (relativePath.endsWith(".java")) {
+                        sourceClasses.put(relativePath
+                                .substring(0, relativePath.length() - ".java".length())
+                                .replace(File.separatorChar, '.'), canonicalSourceRoot);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Unable to index source root " + sourceRoot, e);
         }
-        if (result == null) {
-            throw new ClassNotFoundException(name);
+    }
+
+    private String canonicalize(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
         }
-        return result;
+    }
+
+    private DisposableClassLoader createDisposableClassLoader(final String unit) {
+        return AccessController.doPrivileged(
+                new PrivilegedAction<DisposableClassLoader>() {
+                    public DisposableClassLoader run() {
+                        log.debug("Creating a disposable class loader for " + unit);
+                        return new DisposableClassLoader(ReloadingClassLoader.this, reloadableUrls);
+                    }
+                }, acc);
     }
 
     private String stripInnerClass(String name) {
@@ -128,4 +297,14 @@ public class ReloadingClassLoader extends URLClassLoader {
         }
         return sourceFile;
     }
+
+    private static class Generation {
+        private final long number;
+        private final ConcurrentMap<String, DisposableClassLoader> classLoaders;
+
+        private Generation(long number, ConcurrentMap<String, DisposableClassLoader> classLoaders) {
+            this.number = number;
+            this.classLoaders = classLoaders;
+        }
+    }
 }
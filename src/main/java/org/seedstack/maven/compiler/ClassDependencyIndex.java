@@ -0,0 +1,406 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * In-memory index of the dependencies between the compiled classes of the project, built from class files with ASM.
+ * Class names are internal names (slash-separated). Not thread-safe.
+ */
+public class ClassDependencyIndex {
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private final File classesDirectory;
+    private final Map<String, ClassInfo> classes = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+
+    public ClassDependencyIndex(File classesDirectory) {
+        this.classesDirectory = classesDirectory;
+    }
+
+    /**
+     * Indexes all the class files of the classes directory.
+     *
+     * @return the number of indexed classes.
+     * @throws IOException if a class file cannot be read.
+     */
+    public int build() throws IOException {
+        classes.clear();
+        dependents.clear();
+        scanTree(classesDirectory);
+        return classes.size();
+    }
+
+    /**
+     * Re-indexes the class files of a package directory that changed since they were last indexed and forgets the
+     * classes whose class file is gone.
+     *
+     * @param packageDirectory the package directory.
+     * @throws IOException if a class file cannot be read.
+     */
+    public void update(File packageDirectory) throws IOException {
+        Set<String> remaining = new HashSet<>();
+        for (Map.Entry<String, ClassInfo> entry : classes.entrySet()) {
+            if (entry.getValue().classFile.getParentFile().equals(packageDirectory)) {
+                remaining.add(entry.getKey());
+            }
+        }
+        File[] files = packageDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(".class")) {
+                    String className = toClassName(file);
+                    remaining.remove(className);
+                    ClassInfo classInfo = classes.get(className);
+                    if (classInfo == null || classInfo.lastModified != file.lastModified()) {
+                        index(file);
+                    }
+                }
+            }
+        }
+        for (String className : remaining) {
+            remove(className);
+        }
+    }
+
+    /**
+     * Collects the classes that depend on the given classes.
+     *
+     * @param classNames  the classes.
+     * @param transitively true to collect all the classes that directly or indirectly depend on the given classes,
+     *                     false to only collect direct dependents.
+     * @return the dependent classes, not including the given classes themselves.
+     */
+    public Set<String> getDependents(Collection<String> classNames, boolean transitively) {
+        Set<String> result = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>(classNames);
+        while (!toVisit.isEmpty()) {
+            Set<String> direct = dependents.get(toVisit.poll());
+            if (direct != null) {
+                for (String dependent : direct) {
+                    if (!classNames.contains(dependent) && result.add(dependent) && transitively) {
+                        toVisit.add(dependent);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the strongly connected components of the dependency graph between indexed classes, using an
+     * iterative version of Tarjan's algorithm.
+     *
+     * @return the lexicographically smallest class name of its component for each indexed class.
+     */
+    public Map<String, String> getComponents() {
+        Map<String, Integer> indexes = new HashMap<>();
+        Map<String, Integer> lowLinks = new HashMap<>();
+        Deque<String> stack = new ArrayDeque<>();
+        Set<String> onStack = new HashSet<>();
+        Map<String, String> components = new HashMap<>();
+        for (String start : new TreeSet<>(classes.keySet())) {
+            if (indexes.containsKey(start)) {
+                continue;
+            }
+            Deque<Iterator<String>> iterators = new ArrayDeque<>();
+            Deque<String> path = new ArrayDeque<>();
+            visit(start, indexes, lowLinks, stack, onStack, iterators, path);
+            while (!path.isEmpty()) {
+                String current = path.peek();
+                Iterator<String> iterator = iterators.peek();
+                if (iterator.hasNext()) {
+                    String next = iterator.next();
+                    if (!classes.containsKey(next)) {
+                        continue;
+                    }
+                    if (!indexes.containsKey(next)) {
+                        visit(next, indexes, lowLinks, stack, onStack, iterators, path);
+                    } else if (onStack.contains(next)) {
+                        lowLinks.put(current, Math.min(lowLinks.get(current), indexes.get(next)));
+                    }
+                } else {
+                    path.pop();
+                    iterators.pop();
+                    if (lowLinks.get(current).equals(indexes.get(current))) {
+                        List<String> component = new ArrayList<>();
+                        String member;
+                        do {
+                            member = stack.pop();
+                            onStack.remove(member);
+                            component.add(member);
+                        } while (!member.equals(current));
+                        String representative = Collections.min(component);
+                        for (String componentMember : component) {
+                            components.put(componentMember, representative);
+                        }
+                    }
+                    if (!path.isEmpty()) {
+                        String parent = path.peek();
+                        lowLinks.put(parent, Math.min(lowLinks.get(parent), lowLinks.get(current)));
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
+    private void visit(String className, Map<String, Integer> indexes, Map<String, Integer> lowLinks,
+            Deque<String> stack, Set<String> onStack, Deque<Iterator<String>> iterators, Deque<String> path) {
+        indexes.put(className, indexes.size());
+        lowLinks.put(className, indexes.get(className));
+        stack.push(className);
+        onStack.add(className);
+        path.push(className);
+        iterators.push(classes.get(className).references.iterator());
+    }
+
+    /**
+     * @param className the class name.
+     * @return the path of the source file of the class relative to its source root, or null if unknown.
+     */
+    public String getSourcePath(String className) {
+        ClassInfo classInfo = classes.get(className);
+        if (classInfo == null || classInfo.sourceFile == null) {
+            return null;
+        }
+        int packageIndex = className.lastIndexOf('/');
+        return packageIndex == -1 ? classInfo.sourceFile
+                : className.substring(0, packageIndex + 1) + classInfo.sourceFile;
+    }
+
+    private void scanTree(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    scanTree(file);
+                } else if (file.getName().endsWith(".class")) {
+                    index(file);
+                }
+            }
+        }
+    }
+
+    private void index(File classFile) throws IOException {
+        ClassReader classReader;
+        try (FileInputStream is = new FileInputStream(classFile)) {
+            classReader = new ClassReader(is);
+        }
+        DependencyCollector collector = new DependencyCollector();
+        collectConstantPoolReferences(classReader, collector);
+        classReader.accept(collector, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+
+        String className = classReader.getClassName();
+        remove(className);
+        collector.references.remove(className);
+        classes.put(className, new ClassInfo(classFile, classFile.lastModified(), collector.sourceFile,
+                collector.references));
+        for (String reference : collector.references) {
+            Set<String> referrers = dependents.get(reference);
+            if (referrers == null) {
+                dependents.put(reference, referrers = new HashSet<>());
+            }
+            referrers.add(className);
+        }
+    }
+
+    private void remove(String className) {
+        ClassInfo classInfo = classes.remove(className);
+        if (classInfo != null) {
+            for (String reference : classInfo.references) {
+                Set<String> referrers = dependents.get(reference);
+                if (referrers != null) {
+                    referrers.remove(className);
+                    if (referrers.isEmpty()) {
+                        dependents.remove(reference);
+                    }
+                }
+            }
+        }
+    }
+
+    private void collectConstantPoolReferences(ClassReader classReader, DependencyCollector collector) {
+        char[] buffer = new char[classReader.getMaxStringLength()];
+        for (int i = 1; i < classReader.getItemCount(); i++) {
+            int offset = classReader.getItem(i);
+            if (offset == 0) {
+                // second slot of long and double constants
+                continue;
+            }
+            switch (classReader.readByte(offset - 1)) {
+                case CONSTANT_CLASS:
+                    collector.addType(classReader.readUTF8(offset, buffer));
+                    break;
+                case CONSTANT_NAME_AND_TYPE:
+                    collector.addDescriptor(classReader.readUTF8(offset + 2, buffer));
+                    break;
+                case CONSTANT_METHOD_TYPE:
+                    collector.addDescriptor(classReader.readUTF8(offset, buffer));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private String toClassName(File classFile) {
+        String path = classFile.getAbsolutePath().substring(classesDirectory.getAbsolutePath().length() + 1);
+        return path.substring(0, path.length() - ".class".length()).replace(File.separatorChar, '/');
+    }
+
+    private static class ClassInfo {
+        private final File classFile;
+        private final long lastModified;
+        private final String sourceFile;
+        private final Set<String> references;
+
+        private ClassInfo(File classFile, long lastModified, String sourceFile, Set<String> references) {
+            this.classFile = classFile;
+            this.lastModified = lastModified;
+            this.sourceFile = sourceFile;
+            this.references = references;
+        }
+    }
+
+    private static class DependencyCollector extends ClassVisitor {
+        private final Set<String> references = new HashSet<>();
+        private final AnnotationVisitor annotationVisitor = new AnnotationVisitor(Opcodes.ASM6) {
+            @Override
+            public void visitEnum(String name, String desc, String value) {
+                addDescriptor(desc);
+            }
+
+            @Override
+            public void visit(String name, Object value) {
+                if (value instanceof Type) {
+                    addDescriptor(((Type) value).getDescriptor());
+                }
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String name, String desc) {
+                addDescriptor(desc);
+                return this;
+            }
+
+            @Override
+            public AnnotationVisitor visitArray(String name) {
+                return this;
+            }
+        };
+        private String sourceFile;
+
+        DependencyCollector() {
+            super(Opcodes.ASM6);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                String[] interfaces) {
+            if (superName != null) {
+                addType(superName);
+            }
+            if (interfaces != null) {
+                for (String anInterface : interfaces) {
+                    addType(anInterface);
+                }
+            }
+        }
+
+        @Override
+        public void visitSource(String source, String debug) {
+            this.sourceFile = source;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            addDescriptor(desc);
+            return annotationVisitor;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            addDescriptor(desc);
+            return new FieldVisitor(Opcodes.ASM6) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    addDescriptor(desc);
+                    return annotationVisitor;
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                String[] exceptions) {
+            addDescriptor(desc);
+            if (exceptions != null) {
+                for (String exception : exceptions) {
+                    addType(exception);
+                }
+            }
+            return new MethodVisitor(Opcodes.ASM6) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    addDescriptor(desc);
+                    return annotationVisitor;
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+                    addDescriptor(desc);
+                    return annotationVisitor;
+                }
+            };
+        }
+
+        private void addType(String internalName) {
+            if (internalName.startsWith("[")) {
+                addDescriptor(internalName);
+            } else {
+                references.add(internalName);
+            }
+        }
+
+        private void addDescriptor(String descriptor) {
+            int start = descriptor.indexOf('L');
+            while (start != -1) {
+                int end = descriptor.indexOf(';', start);
+                if (end == -1) {
+                    break;
+                }
+                references.add(descriptor.substring(start + 1, end));
+                start = descriptor.indexOf('L', end);
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.compiler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * In-process Java compiler which keeps a warm file manager across compilations and only compiles the given
+ * sources (and the sources they implicitly require) into the output directory.
+ */
+public class IncrementalCompiler implements Closeable {
+    private static final String COMPILER_PLUGIN_KEY = "org.apache.maven.plugins:maven-compiler-plugin";
+    private final Log log;
+    private final JavaCompiler compiler;
+    private final StandardJavaFileManager fileManager;
+    private final List<String> options;
+
+    private IncrementalCompiler(Log log, JavaCompiler compiler, StandardJavaFileManager fileManager,
+            List<String> options) {
+        this.log = log;
+        this.compiler = compiler;
+        this.fileManager = fileManager;
+        this.options = options;
+    }
+
+    /**
+     * Creates a compiler configured like the maven-compiler-plugin of the project.
+     *
+     * @param log             the logger.
+     * @param mavenProject    the project to compile.
+     * @param outputDirectory the directory receiving class files.
+     * @return the compiler or null if in-process compilation is not possible (no system compiler available or
+     * configuration not supported).
+     * @throws IOException if the compiler cannot be initialized.
+     */
+    public static IncrementalCompiler create(Log log, MavenProject mavenProject, File outputDirectory)
+            throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            log.info("No system Java compiler available, falling back to maven-compiler-plugin");
+            return null;
+        }
+
+        Xpp3Dom configuration = getCompilerConfiguration(mavenProject);
+        if (configuration != null && configuration.getChild("annotationProcessorPaths") != null) {
+            log.info("Annotation processor paths are not supported in-process, falling back to maven-compiler-plugin");
+            return null;
+        }
+
+        List<File> classPath = new ArrayList<>();
+        try {
+            for (String classpathElement : mavenProject.getCompileClasspathElements()) {
+                classPath.add(new File(classpathElement));
+            }
+        } catch (Exception e) {
+            throw new IOException("Unable to resolve compile classpath", e);
+        }
+        List<File> sourcePath = new ArrayList<>();
+        for (String compileSourceRoot : mavenProject.getCompileSourceRoots()) {
+            File file = new File(compileSourceRoot);
+            if (file.isDirectory()) {
+                sourcePath.add(file);
+            }
+        }
+
+        String encoding = getSetting(mavenProject, configuration, "encoding", "project.build.sourceEncoding");
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, Locale.getDefault(),
+                encoding == null ? null : Charset.forName(encoding));
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(outputDirectory));
+        fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+        fileManager.setLocation(StandardLocation.SOURCE_PATH, sourcePath);
+        if (!"none".equals(getSetting(mavenProject, configuration, "proc", "maven.compiler.proc"))) {
+            // Same default location as maven-compiler-plugin for annotation processors output
+            String generatedSourcesDirectory = getSetting(mavenProject, configuration, "generatedSourcesDirectory",
+                    "maven.compiler.generatedSourcesDirectory");
+            File generatedSources = generatedSourcesDirectory == null ? new File(mavenProject.getBuild()
+                    .getDirectory(), "generated-sources" + File.separator + "annotations")
+                    : new File(generatedSourcesDirectory);
+            if (!generatedSources.isDirectory() && !generatedSources.mkdirs()) {
+                throw new IOException("Unable to create directory " + generatedSources.getAbsolutePath());
+            }
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(generatedSources));
+        }
+
+        return new IncrementalCompiler(log, compiler, fileManager, buildOptions(compiler, mavenProject, configuration));
+    }
+
+    /**
+     * Compiles the given source files.
+     *
+     * @param sourceFiles the source files to compile.
+     * @throws CompilationException if compilation fails.
+     */
+    public void compile(Collection<File> sourceFiles) throws CompilationException {
+        if (sourceFiles.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(sourceFiles);
+        Boolean success;
+        try {
+            success = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits).call();
+        } catch (IllegalArgumentException e) {
+            throw new CompilationException("Invalid compiler options " + options, e);
+        }
+
+        int errorCount = 0;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            String message = format(diagnostic);
+            switch (diagnostic.getKind()) {
+                case ERROR:
+                    errorCount++;
+                    log.error(message);
+                    break;
+                case WARNING:
+                case MANDATORY_WARNING:
+                    log.warn(message);
+                    break;
+                default:
+                    log.debug(message);
+            }
+        }
+
+        if (!Boolean.TRUE.equals(success)) {
+            throw new CompilationException("Compilation failed with " + errorCount + " error(s)");
+        }
+        log.info("Compiled " + sourceFiles.size() + " source file(s) in " + (System.currentTimeMillis() - startTime)
+                + " ms");
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileManager.close();
+    }
+
+    private static String format(Diagnostic<? extends JavaFileObject> diagnostic) {
+        JavaFileObject source = diagnostic.getSource();
+        if (source == null) {
+            return diagnostic.getMessage(Locale.getDefault());
+        }
+        return source.getName() + ":[" + diagnostic.getLineNumber() + "," + diagnostic.getColumnNumber() + "] "
+                + diagnostic.getMessage(Locale.getDefault());
+    }
+
+    static List<String> buildOptions(JavaCompiler compiler, MavenProject mavenProject,
+            Xpp3Dom configuration) {
+        List<String> options = new ArrayList<>();
+        options.add("-g");
+        String release = getSetting(mavenProject, configuration, "release", "maven.compiler.release");
+        if (release != null && compiler.isSupportedOption("--release") >= 0) {
+            options.add("--release");
+            options.add(release);
+        } else if (release != null) {
+            options.add("-source");
+            options.add(release);
+            options.add("-target");
+            options.add(release);
+        } else {
+            String source = getSetting(mavenProject, configuration, "source", "maven.compiler.source");
+            if (source != null) {
+                options.add("-source");
+                options.add(source);
+            }
+            String target = getSetting(mavenProject, configuration, "target", "maven.compiler.target");
+            if (target != null) {
+                options.add("-target");
+                options.add(target);
+            }
+        }
+        if (Boolean.parseBoolean(getSetting(mavenProject, configuration, "parameters",
+                "maven.compiler.parameters"))) {
+            options.add("-parameters");
+        }
+        String proc = getSetting(mavenProject, configuration, "proc", "maven.compiler.proc");
+        if (proc != null) {
+            options.add("-proc:" + proc);
+        }
+        if (configuration != null) {
+            Xpp3Dom annotationProcessors = configuration.getChild("annotationProcessors");
+            if (annotationProcessors != null && annotationProcessors.getChildCount() > 0) {
+                StringBuilder processors = new StringBuilder();
+                for (Xpp3Dom annotationProcessor : annotationProcessors.getChildren()) {
+                    if (annotationProcessor.getValue() != null) {
+                        if (processors.length() > 0) {
+                            processors.append(',');
+                        }
+                        processors.append(annotationProcessor.getValue().trim());
+                    }
+                }
+                options.add("-processor");
+                options.add(processors.toString());
+            }
+            Xpp3Dom compilerArgs = configuration.getChild("compilerArgs");
+            if (compilerArgs != null) {
+                for (Xpp3Dom arg : compilerArgs.getChildren()) {
+                    if (arg.getValue() != null) {
+                        options.add(arg.getValue().trim());
+                    }
+                }
+            }
+            Xpp3Dom compilerArguments = configuration.getChild("compilerArguments");
+            if (compilerArguments != null) {
+                // Same rules as maven-compiler-plugin: keys are options, non-empty values are their argument
+                for (Xpp3Dom compilerArgument : compilerArguments.getChildren()) {
+                    String name = compilerArgument.getName();
+                    options.add(name.startsWith("-") ? name : "-" + name);
+                    String value = compilerArgument.getValue();
+                    if (value != null && !value.trim().isEmpty()) {
+                        options.add(value.trim());
+                    }
+                }
+            }
+            Xpp3Dom compilerArgument = configuration.getChild("compilerArgument");
+            if (compilerArgument != null && compilerArgument.getValue() != null) {
+                options.add(compilerArgument.getValue().trim());
+            }
+        }
+        return options;
+    }
+
+    private static Xpp3Dom getCompilerConfiguration(MavenProject mavenProject) {
+        Plugin plugin = mavenProject.getPlugin(COMPILER_PLUGIN_KEY);
+        if (plugin != null && plugin.getConfiguration() instanceof Xpp3Dom) {
+            return (Xpp3Dom) plugin.getConfiguration();
+        }
+        return null;
+    }
+
+    private static String getSetting(MavenProject mavenProject, Xpp3Dom configuration, String name,
+            String property) {
+        if (configuration != null) {
+            Xpp3Dom child = configuration.getChild(name);
+            if (child != null && child.getValue() != null && !child.getValue().trim().startsWith("${")) {
+                return child.getValue().trim();
+            }
+        }
+        String value = mavenProject.getProperties().getProperty(property);
+        return value == null ? null : value.trim();
+    }
+}
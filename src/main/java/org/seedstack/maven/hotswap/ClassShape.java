@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.hotswap;
+
+import java.util.Arrays;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Textual description of everything in a class file but method bodies. Two versions of a class with the same shape
+ * only differ by method bodies and can be redefined in place.
+ */
+final class ClassShape {
+    private ClassShape() {
+        // no instantiation allowed
+    }
+
+    static String of(byte[] classBytes) {
+        ShapeCollector shapeCollector = new ShapeCollector();
+        new ClassReader(classBytes).accept(shapeCollector, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+        return shapeCollector.shape.toString();
+    }
+
+    private static class ShapeCollector extends ClassVisitor {
+        private final StringBuilder shape = new StringBuilder();
+        private final AnnotationVisitor annotationVisitor = new AnnotationVisitor(Opcodes.ASM6) {
+            @Override
+            public void visit(String name, Object value) {
+                shape.append(' ').append(name).append('=');
+                if (value != null && value.getClass().isArray()) {
+                    shape.append(arrayToString(value));
+                } else {
+                    shape.append(value);
+                }
+            }
+
+            @Override
+            public void visitEnum(String name, String desc, String value) {
+                shape.append(' ').append(name).append('=').append(desc).append('.').append(value);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String name, String desc) {
+                shape.append(' ').append(name).append("=@").append(desc);
+                return this;
+            }
+
+            @Override
+            public AnnotationVisitor visitArray(String name) {
+                shape.append(' ').append(name).append("=[]");
+                return this;
+            }
+
+            @Override
+            public void visitEnd() {
+                shape.append(';');
+            }
+        };
+
+        ShapeCollector() {
+            super(Opcodes.ASM6);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                String[] interfaces) {
+            shape.append("class ").append(access).append(' ').append(name).append(' ').append(signature)
+                    .append(" extends ").append(superName)
+                    .append(" implements ").append(Arrays.toString(interfaces)).append('\n');
+        }
+
+        @Override
+        public void visitOuterClass(String owner, String name, String desc) {
+            shape.append("outer ").append(owner).append(' ').append(name).append(desc).append('\n');
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            shape.append("inner ").append(access).append(' ').append(name).append('\n');
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            shape.append("@").append(desc).append(visible);
+            return annotationVisitor;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            shape.append("field ").append(access).append(' ').append(name).append(' ').append(desc).append(' ')
+                    .append(signature).append(" = ").append(value).append('\n');
+            return new FieldVisitor(Opcodes.ASM6) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    shape.append("  @").append(desc).append(visible);
+                    return annotationVisitor;
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                String[] exceptions) {
+            shape.append("method ").append(access).append(' ').append(name).append(desc).append(' ')
+                    .append(signature).append(" throws ").append(Arrays.toString(exceptions)).append('\n');
+            return new MethodVisitor(Opcodes.ASM6) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    shape.append("  @").append(desc).append(visible);
+                    return annotationVisitor;
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+                    shape.append("  @").append(parameter).append(' ').append(desc).append(visible);
+                    return annotationVisitor;
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotationDefault() {
+                    shape.append("  default");
+                    return annotationVisitor;
+                }
+            };
+        }
+
+        private static String arrayToString(Object array) {
+            if (array instanceof byte[]) {
+                return Arrays.toString((byte[]) array);
+            } else if (array instanceof boolean[]) {
+                return Arrays.toString((boolean[]) array);
+            } else if (array instanceof short[]) {
+                return Arrays.toString((short[]) array);
+            } else if (array instanceof char[]) {
+                return Arrays.toString((char[]) array);
+            } else if (array instanceof int[]) {
+                return Arrays.toString((int[]) array);
+            } else if (array instanceof long[]) {
+                return Arrays.toString((long[]) array);
+            } else if (array instanceof float[]) {
+                return Arrays.toString((float[]) array);
+            } else if (array instanceof double[]) {
+                return Arrays.toString((double[]) array);
+            } else {
+                return Arrays.toString((Object[]) array);
+            }
+        }
+    }
+}
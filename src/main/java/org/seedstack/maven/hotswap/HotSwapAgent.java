@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.hotswap;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+
+/**
+ * Java agent giving access to {@link Instrumentation}. When attached, it is loaded by the system class loader and not
+ * by the plugin class loader, so the instrumentation must be read from the system class loader copy of this class.
+ * Only depends on JDK classes.
+ */
+public final class HotSwapAgent {
+    private static final String VIRTUAL_MACHINE_CLASS = "com.sun.tools.attach.VirtualMachine";
+    private static volatile Instrumentation instrumentation;
+
+    private HotSwapAgent() {
+        // no instantiation allowed
+    }
+
+    public static void premain(String args, Instrumentation instrumentation) {
+        agentmain(args, instrumentation);
+    }
+
+    public static void agentmain(String args, Instrumentation instrumentation) {
+        HotSwapAgent.instrumentation = instrumentation;
+    }
+
+    public static Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Attaches the agent to another JVM. Invoked in a separate process since attaching to the current JVM is
+     * forbidden by default since Java 9.
+     *
+     * @param args the process id of the target JVM and the path of the agent jar.
+     * @throws Exception if the agent cannot be attached.
+     */
+    public static void main(String[] args) throws Exception {
+        Class<?> virtualMachineClass = Class.forName(VIRTUAL_MACHINE_CLASS);
+        Object virtualMachine = virtualMachineClass.getMethod("attach", String.class).invoke(null, args[0]);
+        try {
+            Method loadAgent = virtualMachineClass.getMethod("loadAgent", String.class);
+            loadAgent.invoke(virtualMachine, args[1]);
+        } finally {
+            virtualMachineClass.getMethod("detach").invoke(virtualMachine);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.hotswap;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.ClassDefinition;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Redefines already loaded classes in place when only their method bodies have changed.
+ */
+public class HotSwapper {
+    private static final long ATTACH_TIMEOUT = 30;
+    private final Log log;
+    private Instrumentation instrumentation;
+    private boolean unavailable;
+
+    public HotSwapper(Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Checks if the new version of a class can be hot swapped.
+     *
+     * @param oldClassBytes the bytes of the currently loaded version.
+     * @param newClassBytes the bytes of the new version.
+     * @return true if both versions only differ by method bodies.
+     */
+    public static boolean isHotSwappable(byte[] oldClassBytes, byte[] newClassBytes) {
+        return ClassShape.of(oldClassBytes).equals(ClassShape.of(newClassBytes));
+    }
+
+    /**
+     * Redefines the given classes.
+     *
+     * @param definitions the new bytes of each class.
+     * @return true if all classes were redefined, false if the JVM could not redefine them and the application must
+     * be refreshed instead.
+     */
+    public boolean redefine(Map<Class<?>, byte[]> definitions) {
+        Instrumentation currentInstrumentation = getInstrumentation();
+        if (currentInstrumentation == null) {
+            return false;
+        }
+        List<ClassDefinition> classDefinitions = new ArrayList<>();
+        for (Map.Entry<Class<?>, byte[]> definition : definitions.entrySet()) {
+            classDefinitions.add(new ClassDefinition(definition.getKey(), definition.getValue()));
+        }
+        try {
+            currentInstrumentation.redefineClasses(classDefinitions.toArray(new ClassDefinition[0]));
+            return true;
+        } catch (ClassNotFoundException | UnmodifiableClassException | UnsupportedOperationException
+                | LinkageError e) {
+            log.info("Classes cannot be hot swapped (" + e + "), refreshing application instead");
+            return false;
+        }
+    }
+
+    /**
+     * Attaches the agent on first use, so watch sessions that never hot swap don't fork the attach process.
+     */
+    private synchronized Instrumentation getInstrumentation() {
+        if (instrumentation == null && !unavailable) {
+            long startTime = System.currentTimeMillis();
+            try {
+                instrumentation = attach();
+            } catch (Exception e) {
+                log.warn("Unable to attach hot swap agent, hot swap is disabled", e);
+            }
+            if (instrumentation != null && !instrumentation.isRedefineClassesSupported()) {
+                log.warn("JVM does not support class redefinition, hot swap is disabled");
+                instrumentation = null;
+            }
+            unavailable = instrumentation == null;
+            if (!unavailable) {
+                log.debug("Hot swap agent attached in " + (System.currentTimeMillis() - startTime) + " ms");
+            }
+        }
+        return instrumentation;
+    }
+
+    private Instrumentation attach() throws Exception {
+        Instrumentation existing = getAgentInstrumentation();
+        if (existing != null) {
+            return existing;
+        }
+
+        File agentJar = new File(HotSwapAgent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        if (!agentJar.isFile()) {
+            throw new IOException("Hot swap agent is not packaged as a jar: " + agentJar.getAbsolutePath());
+        }
+        File javaHome = new File(System.getProperty("java.home"));
+        String classPath = agentJar.getAbsolutePath();
+        File toolsJar = new File(javaHome.getParentFile(), "lib" + File.separator + "tools.jar");
+        if (toolsJar.isFile()) {
+            classPath += File.pathSeparator + toolsJar.getAbsolutePath();
+        }
+        String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+
+        File output = File.createTempFile("seedstack-hotswap", ".log");
+        try {
+            Process process = new ProcessBuilder(
+                    new File(new File(javaHome, "bin"), "java").getAbsolutePath(),
+                    "-cp",
+                    classPath,
+                    HotSwapAgent.class.getName(),
+                    pid,
+                    agentJar.getAbsolutePath())
+                    .redirectErrorStream(true)
+                    .redirectOutput(output)
+                    .start();
+            if (!process.waitFor(ATTACH_TIMEOUT, TimeUnit.SECONDS)) {
+                process.destroy();
+                throw new IOException("Timeout while attaching hot swap agent");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("Hot swap agent attachment failed: "
+                        + new String(Files.readAllBytes(output.toPath()), Charset.defaultCharset()));
+            }
+        } finally {
+            if (!output.delete()) {
+                output.deleteOnExit();
+            }
+        }
+
+        return getAgentInstrumentation();
+    }
+
+    private Instrumentation getAgentInstrumentation() throws Exception {
+        Class<?> agentClass;
+        try {
+            agentClass = ClassLoader.getSystemClassLoader().loadClass(HotSwapAgent.class.getName());
+        } catch (ClassNotFoundException e) {
+            // Agent not attached yet
+            return null;
+        }
+        return (Instrumentation) agentClass.getMethod("getInstrumentation").invoke(null);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.livereload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A connection to the LiveReload server. It starts as an HTTP connection which either serves the LiveReload script or
+ * is upgraded to a WebSocket. All methods except {@link #send(ByteBuffer)} are invoked by the selector thread.
+ */
+class LRConnection {
+    private static final int MAX_REQUEST_LENGTH = 8192;
+    private static final int MAX_FRAME_LENGTH = 65536;
+    private static final byte[] UNSUPPORTED_DATA = {0x03, (byte) 0xEB};
+    private final LRServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+    private ByteBuffer input = ByteBuffer.allocate(1024);
+    private boolean webSocket;
+    private boolean closeAfterWrite;
+    private boolean closed;
+
+    LRConnection(LRServer server, SocketChannel channel, SelectionKey key) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+    }
+
+    /**
+     * Queues data to be sent. Can be invoked from any thread.
+     *
+     * @param data the data to send.
+     */
+    void send(ByteBuffer data) {
+        output.add(data);
+        server.requestWrite(this);
+    }
+
+    void onReadable() throws IOException {
+        if (!input.hasRemaining()) {
+            int maxLength = webSocket ? MAX_FRAME_LENGTH + 14 : MAX_REQUEST_LENGTH;
+            if (input.capacity() >= maxLength) {
+                close();
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(input.capacity() * 2, maxLength));
+            input.flip();
+            larger.put(input);
+            input = larger;
+        }
+        if (channel.read(input) < 0) {
+            close();
+            return;
+        }
+        input.flip();
+        try {
+            if (!webSocket) {
+                readRequest();
+            }
+            if (webSocket) {
+                readFrames();
+            }
+        } finally {
+            input.compact();
+        }
+    }
+
+    void onWritable() throws IOException {
+        ByteBuffer data;
+        while ((data = output.peek()) != null) {
+            channel.write(data);
+            if (data.hasRemaining()) {
+                return;
+            }
+            output.poll();
+        }
+        if (closeAfterWrite) {
+            close();
+        } else if (key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    void enableWrite() {
+        if (key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    void close() {
+        if (!closed) {
+            closed = true;
+            server.unregister(this);
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void readRequest() {
+        int length = getRequestLength();
+        if (length == -1) {
+            return;
+        }
+        byte[] bytes = new byte[length];
+        input.get(bytes);
+        String[] lines = new String(bytes, StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colonIndex = lines[i].indexOf(':');
+            if (colonIndex > 0) {
+                headers.put(lines[i].substring(0, colonIndex).trim().toLowerCase(Locale.ENGLISH),
+                        lines[i].substring(colonIndex + 1).trim());
+            }
+        }
+
+        String path = requestLine.length > 1 ? requestLine[1] : "";
+        int queryIndex = path.indexOf('?');
+        if (queryIndex != -1) {
+            path = path.substring(0, queryIndex);
+        }
+        if (requestLine.length < 3 || !"GET".equals(requestLine[0])) {
+            respond("405 Method Not Allowed", null, null);
+        } else if ("/livereload.js".equals(path)) {
+            respond("200 OK", "application/javascript", server.getScript());
+        } else if ("/livereload".equals(path) && isWebSocketUpgrade(headers)) {
+            send(ByteBuffer.wrap(("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + WebSocketCodec.acceptKey(headers.get("sec-websocket-key")) + "\r\n"
+                    + "\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+            webSocket = true;
+            server.register(this);
+        } else {
+            respond("404 Not Found", null, null);
+        }
+    }
+
+    private int getRequestLength() {
+        for (int i = input.position(); i + 3 < input.limit(); i++) {
+            if (input.get(i) == '\r' && input.get(i + 1) == '\n' && input.get(i + 2) == '\r'
+                    && input.get(i + 3) == '\n') {
+                return i + 4 - input.position();
+            }
+        }
+        return -1;
+    }
+
+    private boolean isWebSocketUpgrade(Map<String, String> headers) {
+        return "websocket".equalsIgnoreCase(headers.get("upgrade")) && headers.get("sec-websocket-key") != null;
+    }
+
+    private void respond(String status, String contentType, byte[] body) {
+        StringBuilder sb = new StringBuilder("HTTP/1.1 ").append(status).append("\r\n");
+        if (contentType != null) {
+            sb.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        sb.append("Content-Length: ").append(body == null ? 0 : body.length).append("\r\n");
+        sb.append("Connection: close\r\n\r\n");
+        byte[] head = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer response = ByteBuffer.allocate(head.length + (body == null ? 0 : body.length));
+        response.put(head);
+        if (body != null) {
+            response.put(body);
+        }
+        response.flip();
+        closeAfterWrite = true;
+        send(response);
+    }
+
+    private void readFrames() {
+        WebSocketCodec.Frame frame;
+        while (!closeAfterWrite && (frame = WebSocketCodec.decode(input, MAX_FRAME_LENGTH)) != null) {
+            switch (frame.getOpcode()) {
+                case WebSocketCodec.OPCODE_TEXT:
+                    if (frame.isFin()) {
+                        server.onMessage(this, frame.getText());
+                    } else {
+                        closeWebSocket(UNSUPPORTED_DATA);
+                    }
+                    break;
+                case WebSocketCodec.OPCODE_CONTINUATION:
+                case WebSocketCodec.OPCODE_BINARY:
+                    // LiveReload messages are never fragmented nor binary
+                    closeWebSocket(UNSUPPORTED_DATA);
+                    break;
+                case WebSocketCodec.OPCODE_PING:
+                    send(WebSocketCodec.encode(WebSocketCodec.OPCODE_PONG, frame.getPayload()));
+                    break;
+                case WebSocketCodec.OPCODE_CLOSE:
+                    byte[] payload = frame.getPayload();
+                    byte[] status = new byte[Math.min(payload.length, 2)];
+                    System.arraycopy(payload, 0, status, 0, status.length);
+                    closeWebSocket(status);
+                    break;
+                default:
+                    // Pong frames are not used by LiveReload
+                    break;
+            }
+        }
+    }
+
+    private void closeWebSocket(byte[] status) {
+        server.unregister(this);
+        closeAfterWrite = true;
+        send(WebSocketCodec.encode(WebSocketCodec.OPCODE_CLOSE, status));
+    }
+}
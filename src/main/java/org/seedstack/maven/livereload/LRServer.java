@@ -7,61 +7,208 @@
  */
 package org.seedstack.maven.livereload;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import org.eclipse.jetty.server.Server;
-import org.eclipse.jetty.server.handler.ResourceHandler;
-import org.eclipse.jetty.server.nio.SelectChannelConnector;
-import org.eclipse.jetty.util.resource.Resource;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * Modified from: https://github.com/davidB/livereload-jvm
+ * Minimal LiveReload server serving the LiveReload script and WebSocket connections on a single NIO selector thread.
+ * Originally modified from: https://github.com/davidB/livereload-jvm
  */
 public class LRServer {
     private final int _port;
-    private Server _server;
-    private LRWebSocketHandler _wsHandler;
+    private final LRProtocol _protocol = new LRProtocol();
+    private final Set<LRConnection> _webSockets = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Queue<LRConnection> _pendingWrites = new ConcurrentLinkedQueue<>();
+    private Selector _selector;
+    private ServerSocketChannel _serverChannel;
+    private Thread _thread;
+    private volatile boolean _stopped;
+    private volatile byte[] _script;
 
     public LRServer(int port) {
         this._port = port;
     }
 
-    private void init() throws Exception {
-        SelectChannelConnector connector = new SelectChannelConnector();
-        connector.setPort(_port);
-
-        ResourceHandler rHandler = new ResourceHandler() {
+    public void start() throws Exception {
+        _selector = Selector.open();
+        _serverChannel = ServerSocketChannel.open();
+        try {
+            _serverChannel.socket().setReuseAddress(true);
+            _serverChannel.bind(new InetSocketAddress(_port));
+            _serverChannel.configureBlocking(false);
+            _serverChannel.register(_selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            _serverChannel.close();
+            _selector.close();
+            throw e;
+        }
+        _thread = new Thread(new Runnable() {
             @Override
-            public Resource getResource(String path) throws MalformedURLException {
-                if ("/livereload.js".equals(path)) {
-                    try {
-                        return Resource.newResource(LRServer.class.getResource(path));
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-                return null;
+            public void run() {
+                selectLoop();
             }
-        };
-
-        _wsHandler = new LRWebSocketHandler();
-        _wsHandler.setHandler(rHandler);
-
-        _server = new Server();
-        _server.setHandler(_wsHandler);
-        _server.addConnector(connector);
+        }, "livereload");
+        _thread.setDaemon(true);
+        _thread.start();
     }
 
-    public void start() throws Exception {
-        this.init();
-        _server.start();
+    /**
+     * @return the port the server is bound to, which differs from the requested one if it was 0.
+     */
+    int getPort() {
+        return _serverChannel.socket().getLocalPort();
     }
 
     public void stop() throws Exception {
-        _server.stop();
+        _stopped = true;
+        if (_selector != null) {
+            _selector.wakeup();
+        }
+        if (_thread != null) {
+            _thread.join(1000);
+        }
     }
 
     public void notifyChange(String path) throws Exception {
-        _wsHandler.notifyChange(path);
+        notifyChanges(Collections.singleton(path));
+    }
+
+    public void notifyChanges(Collection<String> paths) throws Exception {
+        List<ByteBuffer> frames = new ArrayList<>();
+        for (String path : paths) {
+            frames.add(WebSocketCodec.encodeText(_protocol.reload(path)));
+        }
+        for (LRConnection webSocket : _webSockets) {
+            for (ByteBuffer frame : frames) {
+                webSocket.send(frame.duplicate());
+            }
+        }
+    }
+
+    void register(LRConnection connection) {
+        _webSockets.add(connection);
+    }
+
+    void unregister(LRConnection connection) {
+        _webSockets.remove(connection);
+    }
+
+    void requestWrite(LRConnection connection) {
+        _pendingWrites.add(connection);
+        _selector.wakeup();
+    }
+
+    void onMessage(LRConnection connection, String data) {
+        try {
+            if (_protocol.isHello(data)) {
+                connection.send(WebSocketCodec.encodeText(_protocol.hello()));
+            }
+        } catch (Exception e) {
+            connection.close();
+        }
+    }
+
+    byte[] getScript() {
+        byte[] script = _script;
+        if (script == null) {
+            // Loaded on first request only
+            try (InputStream inputStream = LRServer.class.getResourceAsStream("/livereload.js")) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+                _script = script = outputStream.toByteArray();
+            } catch (IOException | NullPointerException e) {
+                throw new IllegalStateException("Unable to load livereload.js", e);
+            }
+        }
+        return script;
+    }
+
+    private void selectLoop() {
+        try {
+            while (!_stopped) {
+                _selector.select();
+                LRConnection pendingWrite;
+                while ((pendingWrite = _pendingWrites.poll()) != null) {
+                    pendingWrite.enableWrite();
+                }
+                Iterator<SelectionKey> iterator = _selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (key.isValid()) {
+                        handle(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // stop serving
+        } finally {
+            close();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (key.isAcceptable()) {
+            try {
+                SocketChannel channel = _serverChannel.accept();
+                if (channel != null) {
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                    SelectionKey channelKey = channel.register(_selector, SelectionKey.OP_READ);
+                    channelKey.attach(new LRConnection(this, channel, channelKey));
+                }
+            } catch (IOException e) {
+                // ignore failed connection
+            }
+        } else {
+            LRConnection connection = (LRConnection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    connection.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.onWritable();
+                }
+            } catch (IOException | RuntimeException e) {
+                connection.close();
+            }
+        }
+    }
+
+    private void close() {
+        _webSockets.clear();
+        try {
+            for (SelectionKey key : _selector.keys()) {
+                key.channel().close();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // ignore
+        }
+        try {
+            _selector.close();
+        } catch (IOException e) {
+            // ignore
+        }
     }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.livereload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Minimal implementation of the WebSocket protocol (RFC 6455) sufficient for LiveReload: opening handshake and
+ * unfragmented frames. Connections receiving fragmented or binary frames are closed with status 1003 (unsupported
+ * data).
+ */
+final class WebSocketCodec {
+    static final int OPCODE_CONTINUATION = 0x0;
+    static final int OPCODE_TEXT = 0x1;
+    static final int OPCODE_BINARY = 0x2;
+    static final int OPCODE_CLOSE = 0x8;
+    static final int OPCODE_PING = 0x9;
+    static final int OPCODE_PONG = 0xA;
+    private static final String HANDSHAKE_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private WebSocketCodec() {
+        // no instantiation allowed
+    }
+
+    /**
+     * Computes the value of the Sec-WebSocket-Accept header of the handshake response.
+     *
+     * @param key the value of the Sec-WebSocket-Key header of the handshake request.
+     * @return the accept value.
+     */
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key.trim() + HANDSHAKE_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * Encodes a text frame, as sent by a server (not masked).
+     *
+     * @param text the text to send.
+     * @return the encoded frame.
+     */
+    static ByteBuffer encodeText(String text) {
+        return encode(OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Encodes a final frame, as sent by a server (not masked).
+     *
+     * @param opcode  the frame opcode.
+     * @param payload the frame payload.
+     * @return the encoded frame.
+     */
+    static ByteBuffer encode(int opcode, byte[] payload) {
+        int length = payload.length;
+        ByteBuffer buffer;
+        if (length < 126) {
+            buffer = ByteBuffer.allocate(2 + length);
+            buffer.put((byte) (0x80 | opcode));
+            buffer.put((byte) length);
+        } else if (length <= 0xFFFF) {
+            buffer = ByteBuffer.allocate(4 + length);
+            buffer.put((byte) (0x80 | opcode));
+            buffer.put((byte) 126);
+            buffer.putShort((short) length);
+        } else {
+            buffer = ByteBuffer.allocate(10 + length);
+            buffer.put((byte) (0x80 | opcode));
+            buffer.put((byte) 127);
+            buffer.putLong(length);
+        }
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a frame from the buffer if it is complete, unmasking its payload. The buffer position is advanced past
+     * the frame only if it is complete.
+     *
+     * @param buffer    the buffer in read mode.
+     * @param maxLength the maximum payload length accepted.
+     * @return the frame or null if the buffer does not contain a complete frame yet.
+     * @throws IllegalArgumentException if the frame is too large.
+     */
+    static Frame decode(ByteBuffer buffer, int maxLength) {
+        if (buffer.remaining() < 2) {
+            return null;
+        }
+        int start = buffer.position();
+        int first = buffer.get(start) & 0xFF;
+        int second = buffer.get(start + 1) & 0xFF;
+        boolean masked = (second & 0x80) != 0;
+        long length = second & 0x7F;
+        int headerLength = 2;
+        if (length == 126) {
+            if (buffer.remaining() < 4) {
+                return null;
+            }
+            length = buffer.getShort(start + 2) & 0xFFFF;
+            headerLength = 4;
+        } else if (length == 127) {
+            if (buffer.remaining() < 10) {
+                return null;
+            }
+            length = buffer.getLong(start + 2);
+            headerLength = 10;
+        }
+        if (length < 0 || length > maxLength) {
+            throw new IllegalArgumentException("WebSocket frame too large: " + length + " bytes");
+        }
+        int maskLength = masked ? 4 : 0;
+        if (buffer.remaining() < headerLength + maskLength + length) {
+            return null;
+        }
+        byte[] payload = new byte[(int) length];
+        int payloadStart = start + headerLength + maskLength;
+        for (int i = 0; i < payload.length; i++) {
+            byte b = buffer.get(payloadStart + i);
+            if (masked) {
+                b ^= buffer.get(start + headerLength + (i % 4));
+            }
+            payload[i] = b;
+        }
+        buffer.position(payloadStart + payload.length);
+        return new Frame((first & 0x80) != 0, first & 0x0F, payload);
+    }
+
+    static final class Frame {
+        private final boolean fin;
+        private final int opcode;
+        private final byte[] payload;
+
+        Frame(boolean fin, int opcode, byte[] payload) {
+            this.fin = fin;
+            this.opcode = opcode;
+            this.payload = payload;
+        }
+
+        boolean isFin() {
+            return fin;
+        }
+
+        int getOpcode() {
+            return opcode;
+        }
+
+        byte[] getPayload() {
+            return payload;
+        }
+
+        String getText() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -7,17 +7,20 @@
  */
 package org.seedstack.maven.runnables;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.seedstack.maven.AppLifecycle;
 import org.seedstack.maven.Context;
 import org.seedstack.maven.SeedStackUtils;
 
 public class AppRunnable implements Runnable {
-    private final Object refreshMonitor = new Object();
     private final Context context;
     private ClassLoader classLoader;
     private ThreadGroup threadGroup;
     private Object seedLauncher;
+    private ExecutorService refreshExecutor;
 
     public AppRunnable(Context context) {
         this.context = context;
@@ -36,6 +39,9 @@ public class AppRunnable implements Runnable {
                         SeedStackUtils.shutdown(seedLauncher);
                     } catch (Exception e) {
                         context.getLog().error("SeedStack application failed to shutdown properly", e);
+                    } finally {
+                        context.getLifecycle().stopped();
+                        shutdownRefreshExecutor();
                     }
                 }
             });
@@ -43,40 +49,50 @@ public class AppRunnable implements Runnable {
             String[] args = context.getArgs();
             context.getLog().info("Launching SeedStack application with arguments " + Arrays.toString(args));
             SeedStackUtils.launch(seedLauncher, args);
-        } catch (Exception e) {
+            context.getLifecycle().started();
+        } catch (Throwable e) {
+            // Errors such as a NoClassDefFoundError must also end the startup, which may be awaited indefinitely
             threadGroup.uncaughtException(Thread.currentThread(), e);
-        } finally {
-            context.notifyStartup();
+            context.getLifecycle().failed(e);
         }
     }
 
-    @SuppressFBWarnings(value = {"UW_UNCOND_WAIT", "WA_NOT_IN_LOOP"}, justification = "Cannot know when the "
-            + "application is refreshed")
+    /**
+     * Refreshes the application and waits for a refresh taking into account all changes made before the call.
+     *
+     * @throws Exception if the refresh fails.
+     */
     public void refresh() throws Exception {
-        final Exception[] refreshException = new Exception[]{null};
-        if (seedLauncher != null) {
-            new Thread(threadGroup, new Runnable() {
-                @Override
-                public void run() {
-                    Thread.currentThread().setContextClassLoader(classLoader);
-
-                    try {
-                        SeedStackUtils.refresh(seedLauncher);
-                    } catch (Exception e) {
-                        refreshException[0] = e;
-                    }
+        if (seedLauncher == null) {
+            return;
+        }
+        AppLifecycle lifecycle = context.getLifecycle();
+        lifecycle.await(lifecycle.requestRefresh(getRefreshExecutor(), new AppLifecycle.RefreshTask() {
+            @Override
+            public void refresh() throws Exception {
+                SeedStackUtils.refresh(seedLauncher);
+            }
+        }), 0);
+    }
 
-                    // Notify end of refresh
-                    context.notifyStartup();
+    private synchronized ExecutorService getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(threadGroup, runnable, "refresh");
+                    thread.setContextClassLoader(classLoader);
+                    thread.setDaemon(true);
+                    return thread;
                 }
-            }, "refresh").start();
+            });
         }
+        return refreshExecutor;
+    }
 
-        // Wait for refresh complete
-        context.waitForStartup();
-
-        if (refreshException[0] != null) {
-            throw refreshException[0];
+    private synchronized void shutdownRefreshExecutor() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
         }
     }
 }
@@ -36,10 +36,10 @@ public class ToolRunnable implements Runnable {
             String[] args = context.getArgs();
             context.getLog().info("Launching Seed tool " + tool + " with arguments " + Arrays.toString(args));
             SeedStackUtils.launch(toolLauncher, args);
-        } catch (Exception e) {
+            context.getLifecycle().started();
+        } catch (Throwable e) {
             Thread.currentThread().getThreadGroup().uncaughtException(Thread.currentThread(), e);
-        } finally {
-            context.notifyStartup();
+            context.getLifecycle().failed(e);
         }
     }
 }
@@ -7,16 +7,30 @@
  */
 package org.seedstack.maven.watcher;
 
+import java.io.File;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.seedstack.maven.Context;
 import org.seedstack.maven.WatchMojo;
 
+/**
+ * Base of change listeners. Changes are queued by file (the latest kind of change of a file summarizing the previous
+ * ones) and processed in batches by a dedicated thread, so the watcher never waits for the processing of changes
+ * unless the queue holds too many distinct files. A batch holds every pending change, so the queue itself needs no
+ * priority: the subclass orders their processing (see {@link ChangeRouter}).
+ */
 abstract class AbstractFileChangeListener implements FileChangeListener {
-    private final Semaphore semaphore = new Semaphore(1);
-    private final ArrayBlockingQueue<FileEvent> pending = new ArrayBlockingQueue<>(10000);
+    private static final int MAX_PENDING_FILES = 10000;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Map<File, FileEvent.Kind> pending = new LinkedHashMap<>();
+    private Thread consumerThread;
+    private boolean closed;
     protected final WatchMojo watchMojo;
     protected final Context context;
 
@@ -27,22 +41,86 @@ abstract class AbstractFileChangeListener implements FileChangeListener {
 
     @Override
     public void onChange(Set<FileEvent> fileEvents) {
-        pending.addAll(fileEvents);
-        while (!pending.isEmpty()) {
-            boolean permit = false;
-            try {
-                permit = semaphore.tryAcquire();
-                if (permit) {
-                    HashSet<FileEvent> fileEventsToProcess = new HashSet<>();
-                    pending.drainTo(fileEventsToProcess);
-                    refresh(fileEventsToProcess);
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            startConsumer();
+            for (FileEvent fileEvent : fileEvents) {
+                FileEvent.Kind previous = pending.get(fileEvent.getFile());
+                if (previous != null) {
+                    pending.put(fileEvent.getFile(), previous.then(fileEvent.getKind()));
                 } else {
-                    pending.addAll(fileEvents);
+                    while (pending.size() >= MAX_PENDING_FILES && !closed) {
+                        notFull.awaitUninterruptibly();
+                    }
+                    pending.put(fileEvent.getFile(), fileEvent.getKind());
                 }
-            } finally {
-                if (permit) {
-                    semaphore.release();
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        lock.lock();
+        try {
+            closed = true;
+            pending.clear();
+            notEmpty.signalAll();
+            notFull.signalAll();
+            thread = consumerThread;
+        } finally {
+            lock.unlock();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void startConsumer() {
+        if (consumerThread == null) {
+            consumerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    consumeChanges();
+                }
+            }, "watch-refresh");
+            consumerThread.setDaemon(true);
+            consumerThread.start();
+        }
+    }
+
+    private void consumeChanges() {
+        while (true) {
+            Set<FileEvent> fileEventsToProcess = new HashSet<>();
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    notEmpty.await();
                 }
+                if (closed) {
+                    return;
+                }
+                for (Map.Entry<File, FileEvent.Kind> entry : pending.entrySet()) {
+                    fileEventsToProcess.add(new FileEvent(entry.getValue(), entry.getKey()));
+                }
+                pending.clear();
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                refresh(fileEventsToProcess);
+            } catch (RuntimeException e) {
+                watchMojo.getLog().error("Unable to process " + fileEventsToProcess.size() + " change(s)", e);
             }
         }
     }
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.seedstack.maven.Context;
+import org.seedstack.maven.WatchMojo;
+
+/**
+ * Single listener of the watcher which classifies changes into sources, resources and configuration, then applies
+ * them in order: compilation, resource update, one application refresh (unless classes could be hot swapped) and one
+ * LiveReload.
+ */
+public class ChangeRouter extends AbstractFileChangeListener {
+    private final SourceChangeListener sourceChangeListener;
+    private final ResourceChangeListener resourceChangeListener;
+    private final List<String> sourceRoots = new ArrayList<>();
+
+    public ChangeRouter(WatchMojo watchMojo, Context context) throws IOException {
+        super(watchMojo, context);
+        this.sourceChangeListener = new SourceChangeListener(watchMojo, context);
+        this.resourceChangeListener = new ResourceChangeListener(watchMojo, context);
+        for (String compileSourceRoot : context.getMavenProject().getCompileSourceRoots()) {
+            sourceRoots.add(new File(compileSourceRoot).getCanonicalPath() + File.separator);
+        }
+    }
+
+    @Override
+    protected void refresh(Set<FileEvent> fileEvents) {
+        Set<FileEvent> sourceEvents = new HashSet<>();
+        Map<FileEvent, ResourceChangeListener.ResourceFile> resourceChanges = new HashMap<>();
+        Map<FileEvent, ResourceChangeListener.ResourceFile> configChanges = new HashMap<>();
+        classify(fileEvents, sourceEvents, resourceChanges, configChanges);
+
+        SourceChangeListener.Outcome sourceOutcome = sourceEvents.isEmpty() ? SourceChangeListener.Outcome.UNCHANGED
+                : sourceChangeListener.applyChanges(sourceEvents);
+        boolean sourcesChanged = sourceOutcome == SourceChangeListener.Outcome.RECOMPILED;
+        boolean sourcesSwapped = sourceOutcome == SourceChangeListener.Outcome.HOT_SWAPPED;
+
+        boolean resourcesChanged = !resourceChanges.isEmpty() && resourceChangeListener.applyChanges(resourceChanges);
+
+        // Configuration changes take a lighter path, then wait for the application to reload them
+        long configReloadCount = configChanges.isEmpty() ? 0 : resourceChangeListener.expectConfigReload();
+        boolean configChanged = !configChanges.isEmpty()
+                && resourceChangeListener.applyConfigChanges(configChanges);
+        if (configChanged) {
+            resourceChangeListener.awaitConfigReload(configReloadCount);
+        }
+
+        if (sourcesChanged) {
+            try {
+                watchMojo.refresh();
+            } catch (Exception e) {
+                watchMojo.getLog().warn("An error occurred during application refresh", e);
+            }
+        }
+
+        if (sourcesChanged || sourcesSwapped || configChanged) {
+            watchMojo.liveReload();
+            watchMojo.getLog().info("Refresh complete");
+        } else if (resourcesChanged) {
+            // Static assets changes alone can be applied by browsers without reloading the page
+            watchMojo.liveReload(ResourceChangeListener.getLiveReloadPaths(resourceChanges.values()));
+            watchMojo.getLog().info("Refresh complete");
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        sourceChangeListener.close();
+    }
+
+    /**
+     * Classifies changed files. Java files under a compile source root are sources, other files are resources or
+     * configuration if they belong to a resource directory, which may itself be (or be under) a source root.
+     */
+    void classify(Set<FileEvent> fileEvents, Set<FileEvent> sourceEvents,
+            Map<FileEvent, ResourceChangeListener.ResourceFile> resourceChanges,
+            Map<FileEvent, ResourceChangeListener.ResourceFile> configChanges) {
+        for (FileEvent fileEvent : fileEvents) {
+            try {
+                String path = fileEvent.getFile().getCanonicalPath();
+                if (path.endsWith(".java") && isUnder(path, sourceRoots)) {
+                    sourceEvents.add(fileEvent);
+                    continue;
+                }
+                ResourceChangeListener.ResourceFile resourceFile = resourceChangeListener
+                        .resolveResourceFile(fileEvent.getFile(), path);
+                if (resourceFile != null) {
+                    (resourceFile.isConfig() ? configChanges : resourceChanges).put(fileEvent, resourceFile);
+                }
+            } catch (IOException e) {
+                watchMojo.getLog().warn("Unable to resolve changed file " + fileEvent.getFile().getAbsolutePath());
+            }
+        }
+    }
+
+    private boolean isUnder(String path, List<String> roots) {
+        for (String root : roots) {
+            if (path.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
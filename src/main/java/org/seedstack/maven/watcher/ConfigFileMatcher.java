@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recognizes configuration files from their path relative to their resource directory, using glob patterns compiled
+ * once.
+ */
+final class ConfigFileMatcher {
+    static final List<String> DEFAULT_PATTERNS = Collections.unmodifiableList(Arrays.asList(
+            "**/application.{yaml,yml,json,properties}",
+            "**/application.override.{yaml,yml,json,properties}",
+            "**/META-INF/configuration/*"
+    ));
+    private final List<PathMatcher> pathMatchers = new ArrayList<>();
+
+    /**
+     * Creates a matcher of the default configuration files and of additional ones.
+     *
+     * @param additionalPatterns glob patterns of additional configuration files, may be null.
+     */
+    ConfigFileMatcher(List<String> additionalPatterns) {
+        FileSystem fileSystem = FileSystems.getDefault();
+        List<String> patterns = new ArrayList<>(DEFAULT_PATTERNS);
+        if (additionalPatterns != null) {
+            patterns.addAll(additionalPatterns);
+        }
+        for (String pattern : patterns) {
+            String normalizedPattern = pattern.trim().replace('\\', '/');
+            if (normalizedPattern.isEmpty()) {
+                continue;
+            }
+            pathMatchers.add(fileSystem.getPathMatcher("glob:" + normalizedPattern));
+            if (normalizedPattern.startsWith("**/")) {
+                // Also match at the root of the resource directory
+                pathMatchers.add(fileSystem.getPathMatcher("glob:" + normalizedPattern.substring(3)));
+            }
+        }
+    }
+
+    /**
+     * Checks if a file is a configuration file.
+     *
+     * @param relativePath the path of the file relative to its resource directory.
+     * @return true if it is a configuration file, false otherwise.
+     */
+    boolean matches(Path relativePath) {
+        for (PathMatcher pathMatcher : pathMatchers) {
+            if (pathMatcher.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quiet-period debounce: the window closes as soon as no event arrives during the current quiet period. The quiet
+ * period doubles each time a bulk of events extends the window (up to its maximum) and the whole window never
+ * exceeds the maximum delay.
+ */
+class DebounceWindow {
+    private static final int BULK_THRESHOLD = 10;
+    private final long quietPeriod;
+    private final long maxQuietPeriod;
+    private final long maxDelay;
+    private long currentQuietPeriod;
+    private long openedAt;
+    private int eventCount;
+
+    DebounceWindow(long quietPeriod, long maxQuietPeriod, long maxDelay) {
+        if (quietPeriod < 0 || maxQuietPeriod < quietPeriod || maxDelay < quietPeriod) {
+            throw new IllegalArgumentException("Invalid debounce settings: quietPeriod=" + quietPeriod
+                    + ", maxQuietPeriod=" + maxQuietPeriod + ", maxDelay=" + maxDelay);
+        }
+        this.quietPeriod = quietPeriod;
+        this.maxQuietPeriod = maxQuietPeriod;
+        this.maxDelay = maxDelay;
+    }
+
+    void open() {
+        openedAt = System.nanoTime();
+        currentQuietPeriod = quietPeriod;
+        eventCount = 0;
+    }
+
+    void extend(int newEvents) {
+        eventCount += newEvents;
+        if (newEvents >= BULK_THRESHOLD) {
+            currentQuietPeriod = Math.min(currentQuietPeriod * 2, maxQuietPeriod);
+        }
+    }
+
+    /**
+     * @return the time to wait for further events in milliseconds, or 0 if the window must close now.
+     */
+    long nextWait() {
+        long remaining = maxDelay - elapsedMillis();
+        return remaining <= 0 ? 0 : Math.min(currentQuietPeriod, remaining);
+    }
+
+    long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openedAt);
+    }
+
+    int eventCount() {
+        return eventCount;
+    }
+}
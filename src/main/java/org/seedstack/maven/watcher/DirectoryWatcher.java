@@ -14,186 +14,363 @@ import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.FileSystems;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.security.MessageDigest;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import org.apache.maven.plugin.logging.Log;
 
 public class DirectoryWatcher implements Runnable {
-    private final Map<File, byte[]> digests;
+    private final FingerprintIndex fingerprints;
     private final Log log;
     private final FileChangeListener listener;
-    private final WatchService watcher;
-    private final Map<WatchKey, Path> keys;
-    private final WatchEvent.Modifier modifier;
+    private final WatchBackend backend;
+    private final List<Path> roots;
+    private final DebounceWindow debounceWindow;
     private boolean trace = false;
-    private boolean stop;
+    private volatile boolean stop;
 
-    public DirectoryWatcher(Log log, FileChangeListener listener) throws IOException {
-        this.digests = new HashMap<>();
+    public DirectoryWatcher(Log log, FileChangeListener listener, WatchBackend backend, File indexFile,
+            long quietPeriod, long maxQuietPeriod, long maxDelay) {
+        this.fingerprints = new FingerprintIndex(log, indexFile);
         this.log = log;
         this.listener = listener;
-        this.modifier = determineModifier();
-        this.watcher = FileSystems.getDefault().newWatchService();
-        this.keys = new HashMap<>();
+        this.backend = backend;
+        this.debounceWindow = new DebounceWindow(quietPeriod, maxQuietPeriod, maxDelay);
+        this.roots = new CopyOnWriteArrayList<>();
     }
 
-    @SuppressWarnings("unchecked")
-    private WatchEvent.Modifier determineModifier() {
-        try {
-            return (WatchEvent.Modifier) Enum.valueOf(
-                    (Class<Enum>) Class.forName("com.sun.nio.file.SensitivityWatchEventModifier"),
-                    "HIGH");
-        } catch (ClassNotFoundException e) {
-            return null;
+    /**
+     * Registers a directory tree. Can be invoked concurrently for distinct trees before the watcher is started.
+     *
+     * @param start the root of the tree.
+     * @throws IOException if the tree cannot be registered.
+     */
+    public void watchRecursively(Path start) throws IOException {
+        Path root = start.toAbsolutePath();
+        roots.add(root);
+        Map<File, FileEvent.Kind> changes = new HashMap<>();
+        long startTime = System.currentTimeMillis();
+        int directoryCount = registerTree(root, changes);
+        log.info(String.format("Registered %d directories of %s in %d ms with the %s watch backend",
+                directoryCount, start, System.currentTimeMillis() - startTime, backend.getName()));
+        // Files changed while no watcher was running are already handled by the build, only record them
+        Set<FileEvent> offlineChanges = record(changes);
+        fingerprints.flush();
+        if (fingerprints.isRestored() && !offlineChanges.isEmpty()) {
+            log.info(offlineChanges.size() + " file(s) changed in " + start + " since last watch session");
+            for (FileEvent offlineChange : offlineChanges) {
+                log.debug("Offline change: " + offlineChange);
+            }
         }
     }
 
-    public void watchRecursively(final Path start) throws IOException {
-        // register directory and sub-directories
+    private int registerTree(Path start, Map<File, FileEvent.Kind> changes) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        final int[] directoryCount = {0};
+        // register directory and sub-directories while collecting files
         Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
                 watch(dir);
+                directoryCount[0]++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
                 return FileVisitResult.CONTINUE;
             }
         });
+
+        // compare files against the index in parallel since large trees are dominated by stat calls
+        final Map<Path, FileEvent.Kind> detected = new ConcurrentHashMap<>();
+        files.parallelStream().forEach(file -> {
+            FileEvent.Kind kind = detectChange(file);
+            if (kind != null) {
+                detected.put(file, kind);
+            }
+        });
+        for (Map.Entry<Path, FileEvent.Kind> entry : detected.entrySet()) {
+            coalesce(changes, entry.getKey().toFile(), entry.getValue());
+        }
+
+        Set<Path> seen = new HashSet<>(files);
+        for (Path path : fingerprints.pathsUnder(start)) {
+            if (!seen.contains(path)) {
+                coalesce(changes, path.toFile(), FileEvent.Kind.DELETE);
+            }
+        }
+        return directoryCount[0];
+    }
+
+    private FileEvent.Kind detectChange(Path file) {
+        FileFingerprint known = fingerprints.get(file);
+        if (known == null) {
+            return FileEvent.Kind.CREATE;
+        }
+        try {
+            return FileFingerprint.of(file).hasSameAttributes(known) ? null : FileEvent.Kind.MODIFY;
+        } catch (IOException e) {
+            return FileEvent.Kind.DELETE;
+        }
     }
 
     public void watch(Path dir) throws IOException {
-        WatchKey key;
-        if (modifier != null) {
-            key = dir.register(watcher, new WatchEvent.Kind[]{ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY}, modifier);
-        } else {
-            key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
-        }
-        if (trace) {
-            Path prev = keys.get(key);
-            if (prev == null) {
-                log.debug("Watching new directory: " + dir);
-            } else {
-                if (!dir.equals(prev)) {
-                    log.debug("Directory updated: " + dir);
-                }
-            }
+        if (backend.register(dir) && trace) {
+            log.debug("Watching new directory: " + dir);
         }
-        keys.put(key, dir);
     }
 
     public void run() {
+        try {
+            watchLoop();
+        } finally {
+            listener.close();
+            fingerprints.close();
+            try {
+                backend.close();
+            } catch (IOException e) {
+                log.debug("Unable to close the " + backend.getName() + " watch backend", e);
+            }
+        }
+    }
+
+    private void watchLoop() {
         this.trace = true;
         while (!stop) {
-            WatchKey key;
+            List<PathEvent> events;
             try {
-                key = watcher.take();
-            } catch (InterruptedException x) {
+                events = backend.take();
+            } catch (InterruptedException | ClosedWatchServiceException x) {
                 return;
             }
 
+            Map<File, FileEvent.Kind> changes = new LinkedHashMap<>();
+            Set<Path> overflowedRoots = new HashSet<>();
+            debounceWindow.open();
             try {
-                // Let the watcher aggregate events for 500 ms
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
+                processEvents(events, changes, overflowedRoots);
+                // Let the watcher aggregate events from all directories until they get quiet
+                long wait;
+                while ((wait = debounceWindow.nextWait()) > 0) {
+                    events = backend.poll(wait, TimeUnit.MILLISECONDS);
+                    if (events.isEmpty()) {
+                        break;
+                    }
+                    processEvents(events, changes, overflowedRoots);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
                 stop = true;
                 continue;
             }
 
-            Path dir = keys.get(key);
-            if (dir == null) {
-                continue;
+            for (Path overflowedRoot : overflowedRoots) {
+                rescan(overflowedRoot, changes);
             }
 
-            HashSet<FileEvent> fileEvents = new HashSet<>();
-            for (WatchEvent<?> event : key.pollEvents()) {
-                WatchEvent.Kind kind = event.kind();
+            Set<FileEvent> fileEvents = confirm(changes);
+            fingerprints.flush();
 
-                if (kind == OVERFLOW) {
-                    continue;
-                }
+            if (!fileEvents.isEmpty()) {
+                log.info(String.format("Detected %d change(s) from %d event(s) in %d ms", fileEvents.size(),
+                        debounceWindow.eventCount(), debounceWindow.elapsedMillis()));
+                listener.onChange(fileEvents);
+            }
 
-                WatchEvent<Path> ev = cast(event);
-                Path name = ev.context();
-                Path path = dir.resolve(name);
-                File file = path.toFile();
-
-                if (!file.isDirectory()) {
-                    if (event.kind() == ENTRY_CREATE) {
-                        log.debug("New file: " + path);
-                        if (isReallyCreatedOrModified(file)) {
-                            fileEvents.add(new FileEvent(FileEvent.Kind.CREATE, file));
-                        }
-                    } else if (event.kind() == ENTRY_MODIFY) {
-                        log.debug("File modified: " + path);
-                        if (isReallyCreatedOrModified(file)) {
-                            fileEvents.add(new FileEvent(FileEvent.Kind.MODIFY, file));
-                        }
-                    } else if (event.kind() == ENTRY_DELETE) {
-                        log.debug("File deleted: " + path);
-                        if (isReallyDeleted(file)) {
-                            fileEvents.add(new FileEvent(FileEvent.Kind.DELETE, file));
-                        }
-                    }
+            if (backend.isEmpty()) {
+                break;
+            }
+        }
+    }
+
+    private void processEvents(List<PathEvent> events, Map<File, FileEvent.Kind> changes,
+            Set<Path> overflowedRoots) {
+        debounceWindow.extend(events.size());
+        for (PathEvent event : events) {
+            WatchEvent.Kind<?> kind = event.getKind();
+            Path path = event.getPath();
+
+            if (kind == OVERFLOW) {
+                // events were lost, the root containing this directory will be rescanned
+                Path root = findRoot(path);
+                if (root != null) {
+                    overflowedRoots.add(root);
+                } else {
+                    overflowedRoots.addAll(roots);
                 }
+                continue;
+            }
 
+            File file = path.toFile();
+            if (!file.isDirectory()) {
                 if (kind == ENTRY_CREATE) {
-                    try {
-                        if (Files.isDirectory(path, NOFOLLOW_LINKS)) {
-                            watchRecursively(path);
-                        }
-                    } catch (IOException e) {
-                        log.error("Unable to watch " + path, e);
+                    log.debug("New file: " + path);
+                    coalesce(changes, file, FileEvent.Kind.CREATE);
+                } else if (kind == ENTRY_MODIFY) {
+                    log.debug("File modified: " + path);
+                    coalesce(changes, file, FileEvent.Kind.MODIFY);
+                } else if (kind == ENTRY_DELETE) {
+                    log.debug("File deleted: " + path);
+                    coalesce(changes, file, FileEvent.Kind.DELETE);
+                }
+            }
+
+            if (kind == ENTRY_CREATE) {
+                try {
+                    if (Files.isDirectory(path, NOFOLLOW_LINKS)) {
+                        // files may have been written before the new directory got registered
+                        registerTree(path, changes);
                     }
+                } catch (IOException e) {
+                    log.error("Unable to watch " + path, e);
                 }
             }
+        }
+    }
 
-            if (!fileEvents.isEmpty()) {
-                listener.onChange(fileEvents);
+    private void rescan(Path root, Map<File, FileEvent.Kind> changes) {
+        long startTime = System.currentTimeMillis();
+        int before = changes.size();
+        try {
+            registerTree(root, changes);
+            log.info(String.format("Watch events overflowed in %s, rescanned in %d ms (%d candidate change(s))",
+                    root, System.currentTimeMillis() - startTime, changes.size() - before));
+        } catch (IOException e) {
+            log.error("Unable to rescan " + root + " after watch events overflowed", e);
+        }
+    }
+
+    private Path findRoot(Path dir) {
+        Path found = null;
+        for (Path root : roots) {
+            if (dir.startsWith(root) && (found == null || root.getNameCount() > found.getNameCount())) {
+                found = root;
             }
+        }
+        return found;
+    }
 
-            boolean valid = key.reset();
-            if (!valid) {
-                keys.remove(key);
-                if (keys.isEmpty()) {
-                    break;
+    private Set<FileEvent> confirm(Map<File, FileEvent.Kind> changes) {
+        Set<FileEvent> fileEvents = new HashSet<>();
+        for (Map.Entry<File, FileEvent.Kind> change : changes.entrySet()) {
+            File file = change.getKey();
+            if (change.getValue() == FileEvent.Kind.DELETE) {
+                if (isReallyDeleted(file)) {
+                    fileEvents.add(new FileEvent(FileEvent.Kind.DELETE, file));
                 }
+            } else if (isReallyCreatedOrModified(file)) {
+                fileEvents.add(new FileEvent(change.getValue(), file));
             }
         }
+        return fileEvents;
     }
 
-    private boolean isReallyCreatedOrModified(File file) {
-        if (file.exists()) {
+    /**
+     * Records changes found at registration with metadata only, so registration does not read file contents.
+     * Checksums are computed later, when an event shows matching metadata.
+     */
+    private Set<FileEvent> record(Map<File, FileEvent.Kind> changes) {
+        final Set<FileEvent> fileEvents = ConcurrentHashMap.newKeySet();
+        changes.entrySet().parallelStream().forEach(change -> {
+            Path path = change.getKey().toPath();
+            if (change.getValue() == FileEvent.Kind.DELETE) {
+                if (!Files.exists(path)) {
+                    fingerprints.remove(path);
+                    fileEvents.add(new FileEvent(FileEvent.Kind.DELETE, change.getKey()));
+                }
+                return;
+            }
             try {
-                byte[] knownDigest = digests.get(file);
-                byte[] newDigest = computeSha1(file);
-                digests.put(file, newDigest);
-                return !Arrays.equals(newDigest, knownDigest);
-            } catch (Exception e) {
-                log.warn("Unable to compute digest of file " + file.getAbsolutePath());
-                return true;
+                FileFingerprint current = FileFingerprint.of(path);
+                FileFingerprint known = fingerprints.get(path);
+                if (known == null || !current.hasSameMetadata(known)) {
+                    fingerprints.put(path, current);
+                    fileEvents.add(new FileEvent(change.getValue(), change.getKey()));
+                }
+                // Otherwise only the capture was too recent to conclude: keep the known fingerprint and its checksum
+            } catch (IOException e) {
+                fingerprints.remove(path);
             }
-        } else {
-            digests.remove(file);
+        });
+        return fileEvents;
+    }
+
+    private void coalesce(Map<File, FileEvent.Kind> changes, File file, FileEvent.Kind kind) {
+        FileEvent.Kind previous = changes.get(file);
+        changes.put(file, previous == null ? kind : previous.then(kind));
+    }
+
+    private boolean isReallyCreatedOrModified(File file) {
+        Path path = file.toPath();
+        FileFingerprint known = fingerprints.get(path);
+        FileFingerprint current;
+        try {
+            current = FileFingerprint.of(path);
+        } catch (NoSuchFileException e) {
+            fingerprints.remove(path);
+            return false;
+        } catch (IOException e) {
+            log.warn("Unable to read attributes of file " + file.getAbsolutePath());
+            return true;
+        }
+
+        if (known == null || current.getSize() != known.getSize()) {
+            remember(path, current);
+            return true;
+        } else if (current.hasSameAttributes(known)) {
             return false;
         }
+
+        // Same size but attributes are inconclusive: compare contents
+        try {
+            current = current.withChecksum(path);
+            fingerprints.put(path, current);
+            return !known.hasChecksum() || current.getChecksum() != known.getChecksum();
+        } catch (IOException e) {
+            log.warn("Unable to compute checksum of file " + file.getAbsolutePath());
+            fingerprints.put(path, current);
+            return true;
+        }
+    }
+
+    private void remember(Path path, FileFingerprint fingerprint) {
+        if (fingerprint.isSmall()) {
+            try {
+                fingerprint = fingerprint.withChecksum(path);
+            } catch (IOException e) {
+                log.debug("Unable to compute checksum of file " + path);
+            }
+        }
+        fingerprints.put(path, fingerprint);
     }
 
     private boolean isReallyDeleted(File file) {
         if (!file.exists()) {
-            digests.remove(file);
+            fingerprints.remove(file.toPath());
             return true;
         } else {
             return false;
@@ -203,24 +380,4 @@ public class DirectoryWatcher implements Runnable {
     public void stop() {
         stop = true;
     }
-
-    private byte[] computeSha1(File file) throws Exception {
-        MessageDigest digest = MessageDigest.getInstance("SHA-1");
-        try (InputStream fis = new FileInputStream(file)) {
-            int n = 0;
-            byte[] buffer = new byte[16384];
-            while (n != -1) {
-                n = fis.read(buffer);
-                if (n > 0) {
-                    digest.update(buffer, 0, n);
-                }
-            }
-        }
-        return digest.digest();
-    }
-
-    @SuppressWarnings("unchecked")
-    private static <T> WatchEvent<T> cast(WatchEvent<?> event) {
-        return (WatchEvent<T>) event;
-    }
-}
\ No newline at end of file
+}
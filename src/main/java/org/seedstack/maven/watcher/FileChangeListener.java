@@ -11,4 +11,7 @@ import java.util.Set;
 
 public interface FileChangeListener {
     void onChange(Set<FileEvent> fileEvents);
+
+    default void close() {
+    }
 }
@@ -8,6 +8,7 @@
 package org.seedstack.maven.watcher;
 
 import java.io.File;
+import java.util.Objects;
 
 public class FileEvent {
     private final Kind kind;
@@ -26,9 +27,47 @@ public class FileEvent {
         return file;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        FileEvent fileEvent = (FileEvent) o;
+        return kind == fileEvent.kind && file.equals(fileEvent.file);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, file);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + file.getPath();
+    }
+
     public enum Kind {
         CREATE,
         MODIFY,
-        DELETE
+        DELETE;
+
+        /**
+         * Coalesces this kind with a subsequent kind for the same file.
+         *
+         * @param next the kind of the subsequent event.
+         * @return the kind summarizing both events.
+         */
+        public Kind then(Kind next) {
+            if (this == CREATE && next == MODIFY) {
+                return CREATE;
+            } else if (this == DELETE && next != DELETE) {
+                return MODIFY;
+            } else {
+                return next;
+            }
+        }
     }
 }
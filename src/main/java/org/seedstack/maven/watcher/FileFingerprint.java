@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Cheap file identity made of size, last modification time and file key, with an optional CRC32 checksum of the
+ * contents that is only computed when the attributes alone cannot tell whether the file has changed.
+ */
+final class FileFingerprint {
+    static final long UNKNOWN_CHECKSUM = -1L;
+    private static final long RACY_WINDOW = 2000;
+    private static final long EAGER_CHECKSUM_THRESHOLD = 64 * 1024;
+    private static final long MAPPING_THRESHOLD = 256 * 1024;
+    private static final int BUFFER_SIZE = 16384;
+    private final long size;
+    private final long lastModified;
+    private final String fileKey;
+    private final long capturedAt;
+    private final long checksum;
+
+    FileFingerprint(long size, long lastModified, String fileKey, long capturedAt, long checksum) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
+        this.capturedAt = capturedAt;
+        this.checksum = checksum;
+    }
+
+    static FileFingerprint of(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        return new FileFingerprint(attributes.size(),
+                attributes.lastModifiedTime().toMillis(),
+                fileKey == null ? null : fileKey.toString(),
+                System.currentTimeMillis(),
+                UNKNOWN_CHECKSUM);
+    }
+
+    FileFingerprint withChecksum(Path path) throws IOException {
+        return new FileFingerprint(size, lastModified, fileKey, capturedAt, computeChecksum(path, size));
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+
+    String getFileKey() {
+        return fileKey;
+    }
+
+    long getCapturedAt() {
+        return capturedAt;
+    }
+
+    long getChecksum() {
+        return checksum;
+    }
+
+    boolean hasChecksum() {
+        return checksum != UNKNOWN_CHECKSUM;
+    }
+
+    /**
+     * Small files are cheap enough to be checksummed as soon as they are seen, so a later rewrite with the same
+     * contents can be recognized. Larger files are only checksummed when attributes are inconclusive.
+     */
+    boolean isSmall() {
+        return size <= EAGER_CHECKSUM_THRESHOLD;
+    }
+
+    /**
+     * Attributes are conclusive when they all match and the file was not modified so close to the capture that a
+     * coarse timestamp resolution could hide a subsequent write.
+     */
+    boolean hasSameAttributes(FileFingerprint other) {
+        return hasSameMetadata(other) && other.capturedAt - other.lastModified > RACY_WINDOW;
+    }
+
+    /**
+     * Size, last modification time and file key match, which is not conclusive if the other fingerprint was captured
+     * too close to the file modification.
+     */
+    boolean hasSameMetadata(FileFingerprint other) {
+        return size == other.size
+                && lastModified == other.lastModified
+                && Objects.equals(fileKey, other.fileKey);
+    }
+
+    private static long computeChecksum(Path path, long size) throws IOException {
+        CRC32 crc32 = new CRC32();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (size >= MAPPING_THRESHOLD) {
+                MappedByteBuffer mappedByteBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                crc32.update(mappedByteBuffer);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    crc32.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return crc32.getValue();
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Fingerprints of watched files, optionally persisted across watch sessions as an append-only binary log which is
+ * compacted on load and whenever it holds too many obsolete records. Safe for concurrent use.
+ */
+class FingerprintIndex {
+    private static final int MAGIC = 0x53574958;
+    private static final int VERSION = 1;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int COMPACTION_THRESHOLD = 10000;
+    private final Map<Path, FileFingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final Log log;
+    private final File file;
+    private DataOutputStream output;
+    private int appendedRecords;
+    private boolean restored;
+
+    FingerprintIndex(Log log, File file) {
+        this.log = log;
+        this.file = file;
+        if (file != null) {
+            load();
+            restored = !fingerprints.isEmpty();
+        }
+    }
+
+    boolean isRestored() {
+        return restored;
+    }
+
+    FileFingerprint get(Path path) {
+        return fingerprints.get(path);
+    }
+
+    synchronized void put(Path path, FileFingerprint fingerprint) {
+        fingerprints.put(path, fingerprint);
+        if (output != null) {
+            try {
+                output.writeByte(PUT);
+                output.writeUTF(path.toString());
+                writeFingerprint(output, fingerprint);
+                appendedRecords++;
+            } catch (IOException e) {
+                disablePersistence(e);
+            }
+        }
+    }
+
+    synchronized void remove(Path path) {
+        if (fingerprints.remove(path) != null && output != null) {
+            try {
+                output.writeByte(REMOVE);
+                output.writeUTF(path.toString());
+                appendedRecords++;
+            } catch (IOException e) {
+                disablePersistence(e);
+            }
+        }
+    }
+
+    List<Path> pathsUnder(Path root) {
+        List<Path> paths = new ArrayList<>();
+        for (Path path : fingerprints.keySet()) {
+            if (path.startsWith(root)) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    synchronized void flush() {
+        if (output != null) {
+            try {
+                if (appendedRecords > COMPACTION_THRESHOLD && appendedRecords > fingerprints.size()) {
+                    // Most appended records are obsolete: rewrite the log with live fingerprints only
+                    compact();
+                } else {
+                    output.flush();
+                }
+            } catch (IOException e) {
+                disablePersistence(e);
+            }
+        }
+    }
+
+    synchronized void close() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                log.debug("Unable to close fingerprint index " + file.getAbsolutePath(), e);
+            }
+            output = null;
+        }
+    }
+
+    private void load() {
+        if (file.isFile()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (input.readInt() == MAGIC && input.readInt() == VERSION) {
+                    readRecords(input);
+                } else {
+                    log.debug("Ignoring fingerprint index with unknown format " + file.getAbsolutePath());
+                }
+            } catch (IOException e) {
+                log.debug("Unable to read fingerprint index " + file.getAbsolutePath(), e);
+            }
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            disablePersistence(e);
+        }
+    }
+
+    private void readRecords(DataInputStream input) throws IOException {
+        try {
+            while (true) {
+                byte operation = input.readByte();
+                Path path = Paths.get(input.readUTF());
+                if (operation == PUT) {
+                    fingerprints.put(path, readFingerprint(input));
+                } else if (operation == REMOVE) {
+                    fingerprints.remove(path);
+                } else {
+                    throw new IOException("Corrupted fingerprint index record");
+                }
+            }
+        } catch (EOFException e) {
+            // end of log, possibly truncated by an abrupt stop: keep what could be read
+        }
+    }
+
+    private void compact() throws IOException {
+        if (output != null) {
+            output.close();
+            output = null;
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent.getAbsolutePath());
+        }
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream tmpOutput = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            tmpOutput.writeInt(MAGIC);
+            tmpOutput.writeInt(VERSION);
+            for (Map.Entry<Path, FileFingerprint> entry : fingerprints.entrySet()) {
+                tmpOutput.writeByte(PUT);
+                tmpOutput.writeUTF(entry.getKey().toString());
+                writeFingerprint(tmpOutput, entry.getValue());
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        appendedRecords = 0;
+    }
+
+    private void disablePersistence(IOException e) {
+        log.warn("Unable to persist fingerprint index " + file.getAbsolutePath() + ", continuing in memory", e);
+        close();
+    }
+
+    private static void writeFingerprint(DataOutputStream output, FileFingerprint fingerprint) throws IOException {
+        output.writeLong(fingerprint.getSize());
+        output.writeLong(fingerprint.getLastModified());
+        output.writeUTF(fingerprint.getFileKey() == null ? "" : fingerprint.getFileKey());
+        output.writeLong(fingerprint.getCapturedAt());
+        output.writeLong(fingerprint.getChecksum());
+    }
+
+    private static FileFingerprint readFingerprint(DataInputStream input) throws IOException {
+        long size = input.readLong();
+        long lastModified = input.readLong();
+        String fileKey = input.readUTF();
+        long capturedAt = input.readLong();
+        long checksum = input.readLong();
+        return new FileFingerprint(size, lastModified, fileKey.isEmpty() ? null : fileKey, capturedAt, checksum);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backend based on the JDK {@link WatchService}, which uses the native facility of the platform when available
+ * (inotify on Linux, ReadDirectoryChangesW on Windows) and polling otherwise.
+ */
+public class NativeWatchBackend implements WatchBackend {
+    private final WatchService watcher;
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final WatchEvent.Modifier modifier;
+
+    public NativeWatchBackend() throws IOException {
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.modifier = determineModifier();
+    }
+
+    @SuppressWarnings("unchecked")
+    private WatchEvent.Modifier determineModifier() {
+        try {
+            return (WatchEvent.Modifier) Enum.valueOf(
+                    (Class<Enum>) Class.forName("com.sun.nio.file.SensitivityWatchEventModifier"),
+                    "HIGH");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "native";
+    }
+
+    @Override
+    public boolean register(Path dir) throws IOException {
+        WatchKey key;
+        if (modifier != null) {
+            key = dir.register(watcher, new WatchEvent.Kind[]{ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY}, modifier);
+        } else {
+            key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        }
+        return keys.put(key, dir) == null;
+    }
+
+    @Override
+    public List<PathEvent> take() throws InterruptedException {
+        List<PathEvent> events = new ArrayList<>();
+        drain(watcher.take(), events);
+        return events;
+    }
+
+    @Override
+    public List<PathEvent> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        List<PathEvent> events = new ArrayList<>();
+        WatchKey key = watcher.poll(timeout, unit);
+        if (key != null) {
+            drain(key, events);
+        }
+        return events;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+
+    private void drain(WatchKey key, List<PathEvent> events) {
+        do {
+            Path dir = keys.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (dir != null) {
+                    if (event.kind() == OVERFLOW) {
+                        events.add(new PathEvent(OVERFLOW, dir));
+                    } else {
+                        events.add(new PathEvent(event.kind(), dir.resolve((Path) event.context())));
+                    }
+                }
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+        } while ((key = watcher.poll()) != null);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+
+/**
+ * Raw event emitted by a {@link WatchBackend}, using the standard watch event kinds. For overflow events, the path
+ * is the directory that lost events.
+ */
+public class PathEvent {
+    private final WatchEvent.Kind<?> kind;
+    private final Path path;
+
+    public PathEvent(WatchEvent.Kind<?> kind, Path path) {
+        this.kind = kind;
+        this.path = path;
+    }
+
+    public WatchEvent.Kind<?> getKind() {
+        return kind;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backend which periodically lists watched directories and compares them to an in-memory snapshot. It doesn't
+ * consume any OS watch resource, at the expense of a latency bounded by the polling interval.
+ */
+public class PollingWatchBackend implements WatchBackend {
+    private final Map<Path, Map<Path, Entry>> snapshots = new ConcurrentHashMap<>();
+    private final long interval;
+    private long nextScan;
+    private volatile boolean closed;
+
+    public PollingWatchBackend(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Polling interval must be strictly positive");
+        }
+        this.interval = interval;
+    }
+
+    @Override
+    public String getName() {
+        return "polling";
+    }
+
+    @Override
+    public boolean register(Path dir) throws IOException {
+        if (snapshots.containsKey(dir)) {
+            return false;
+        }
+        snapshots.put(dir, list(dir));
+        return true;
+    }
+
+    @Override
+    public List<PathEvent> take() throws InterruptedException {
+        List<PathEvent> events;
+        do {
+            events = poll(interval, TimeUnit.MILLISECONDS);
+        } while (events.isEmpty());
+        return events;
+    }
+
+    @Override
+    public List<PathEvent> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        while (true) {
+            checkOpen();
+            long now = System.currentTimeMillis();
+            if (nextScan > deadline) {
+                Thread.sleep(Math.max(0, deadline - now));
+                return new ArrayList<>();
+            }
+            Thread.sleep(Math.max(0, nextScan - now));
+            checkOpen();
+            List<PathEvent> events = scan();
+            nextScan = System.currentTimeMillis() + interval;
+            if (!events.isEmpty() || nextScan > deadline) {
+                return events;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return snapshots.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new ClosedWatchServiceException();
+        }
+    }
+
+    private List<PathEvent> scan() {
+        List<PathEvent> events = new ArrayList<>();
+        for (Map.Entry<Path, Map<Path, Entry>> snapshot : snapshots.entrySet()) {
+            Path dir = snapshot.getKey();
+            Map<Path, Entry> previous = snapshot.getValue();
+            Map<Path, Entry> current;
+            try {
+                current = list(dir);
+            } catch (IOException e) {
+                // directory is gone (or unreadable): report its known children as deleted and forget it
+                for (Path child : previous.keySet()) {
+                    events.add(new PathEvent(ENTRY_DELETE, child));
+                }
+                snapshots.remove(dir);
+                continue;
+            }
+            for (Map.Entry<Path, Entry> entry : current.entrySet()) {
+                Entry known = previous.get(entry.getKey());
+                if (known == null) {
+                    events.add(new PathEvent(ENTRY_CREATE, entry.getKey()));
+                } else if (!known.equals(entry.getValue())) {
+                    events.add(new PathEvent(ENTRY_MODIFY, entry.getKey()));
+                }
+            }
+            for (Path child : previous.keySet()) {
+                if (!current.containsKey(child)) {
+                    events.add(new PathEvent(ENTRY_DELETE, child));
+                }
+            }
+            snapshot.setValue(current);
+        }
+        return events;
+    }
+
+    private Map<Path, Entry> list(Path dir) throws IOException {
+        Map<Path, Entry> entries = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    entries.put(child, new Entry(attributes));
+                } catch (NoSuchFileException | NotDirectoryException e) {
+                    // removed while listing
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static class Entry {
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(BasicFileAttributes attributes) {
+            this.directory = attributes.isDirectory();
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return directory == entry.directory
+                    && (directory || size == entry.size && lastModified == entry.lastModified);
+        }
+
+        @Override
+        public int hashCode() {
+            return Boolean.hashCode(directory);
+        }
+    }
+}
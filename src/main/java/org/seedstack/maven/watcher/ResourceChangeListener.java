@@ -18,81 +18,279 @@ import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.SelectorUtils;
 import org.seedstack.maven.Context;
+import org.seedstack.maven.SeedStackUtils;
 import org.seedstack.maven.WatchMojo;
 
-public class ResourceChangeListener extends AbstractFileChangeListener {
-    public ResourceChangeListener(WatchMojo watchMojo, Context context) {
-        super(watchMojo, context);
+/**
+ * Applies resource and configuration changes on behalf of the {@link ChangeRouter}.
+ */
+class ResourceChangeListener {
+    private static final String WEB_RESOURCES_PREFIX = "META-INF/resources/";
+    private final WatchMojo watchMojo;
+    private final Context context;
+    private final ConfigFileMatcher configFileMatcher;
+    private final ReentrantLock configLock = new ReentrantLock();
+    private final Condition configReloaded = configLock.newCondition();
+    private long configReloadCount;
+    private Boolean configListenerRegistered;
+
+    ResourceChangeListener(WatchMojo watchMojo, Context context) {
+        this.watchMojo = watchMojo;
+        this.context = context;
+        this.configFileMatcher = new ConfigFileMatcher(watchMojo.getConfigFiles());
     }
 
-    @Override
-    protected void refresh(Set<FileEvent> fileEvents) {
-        boolean configChanged = false;
-        List<File> resourcesToDelete = new ArrayList<>();
+    /**
+     * Removes deleted resources from the output directory and updates the others. Unfiltered resources of resource
+     * directories without target path are served from the resource directory, which comes first in the watch
+     * classpath, so only their stale copies are removed. Other changed resources are copied, unless a filtered
+     * resource has changed in which case the maven-resources-plugin is executed.
+     *
+     * @param resourceChanges the resource file events with their resolved resource file.
+     * @return true if resources were successfully updated.
+     */
+    boolean applyChanges(Map<FileEvent, ResourceFile> resourceChanges) {
         watchMojo.getLog().info("Resource change(s) detected");
+        long startTime = System.currentTimeMillis();
+        boolean filteredChange = false;
+        int updated = 0;
 
         try {
-            for (FileEvent fileEvent : fileEvents) {
+            for (Map.Entry<FileEvent, ResourceFile> resourceChange : resourceChanges.entrySet()) {
+                FileEvent fileEvent = resourceChange.getKey();
+                ResourceFile resourceFile = resourceChange.getValue();
                 File changedFile = fileEvent.getFile();
+                if (!resourceFile.isSelected()) {
+                    watchMojo.getLog().debug("Ignoring file excluded from resources: " + changedFile.getPath());
+                    continue;
+                }
+
                 if (fileEvent.getKind() == FileEvent.Kind.CREATE) {
                     watchMojo.getLog().debug("NEW: " + changedFile.getPath());
                 } else if (fileEvent.getKind() == FileEvent.Kind.MODIFY) {
                     watchMojo.getLog().debug("MODIFIED: " + changedFile.getPath());
                 } else if (fileEvent.getKind() == FileEvent.Kind.DELETE) {
                     watchMojo.getLog().debug("DELETED: " + changedFile.getPath());
-                    try {
-                        resourcesToDelete.add(resolveResourceFile(changedFile));
-                    } catch (IOException e) {
-                        throw new MojoExecutionException("Unable to resolve target file for resource " + changedFile.getAbsolutePath());
-                    }
                 }
 
-                if (isConfigFile(changedFile)) {
-                    configChanged = true;
+                if (fileEvent.getKind() == FileEvent.Kind.DELETE) {
+                    File targetFile = resourceFile.getTargetFile();
+                    watchMojo.getLog().info("Deleting missing resource " + targetFile.getAbsolutePath());
+                    deleteTargetFile(targetFile);
+                } else if (resourceFile.isFiltered()) {
+                    filteredChange = true;
+                } else if (resourceFile.isServedFromSource()) {
+                    // Served from the resource directory, only remove the stale copy
+                    deleteTargetFile(resourceFile.getTargetFile());
+                    updated++;
+                } else {
+                    copyResource(changedFile, resourceFile.getTargetFile());
+                    updated++;
                 }
             }
 
-            for (File file : resourcesToDelete) {
-                watchMojo.getLog().info("Deleting missing resource " + file.getAbsolutePath());
-                if (!file.delete()) {
-                    watchMojo.getLog().warn("Unable to delete resource " + file.getAbsolutePath());
+            if (filteredChange) {
+                watchMojo.getLog().info("Filtered resource(s) changed, updating resources");
+                copyResources();
+            } else {
+                watchMojo.getLog().info(String.format("Updated %d resource(s) in %d ms", updated,
+                        System.currentTimeMillis() - startTime));
+            }
+
+            return true;
+        } catch (MojoExecutionException e) {
+            watchMojo.getLog().warn("An error occurred during resource copy, ignoring resource changes", e);
+            return false;
+        }
+    }
+
+    /**
+     * Applies configuration file changes. Unfiltered configuration files of resource directories without target path
+     * are read by the application directly from the resource directory, which comes first in the watch classpath, so
+     * they are not copied: their stale copies are only removed from the output directory. Other configuration files
+     * are handled as regular resources.
+     *
+     * @param configChanges the configuration file events with their resolved resource file.
+     * @return true if configuration files were successfully updated.
+     */
+    boolean applyConfigChanges(Map<FileEvent, ResourceFile> configChanges) {
+        Map<FileEvent, ResourceFile> resourceChanges = new HashMap<>();
+        for (Map.Entry<FileEvent, ResourceFile> configChange : configChanges.entrySet()) {
+            ResourceFile resourceFile = configChange.getValue();
+            if (resourceFile.isServedFromSource()) {
+                watchMojo.getLog().debug("CONFIG: " + configChange.getKey());
+                deleteTargetFile(resourceFile.getTargetFile());
+            } else {
+                resourceChanges.put(configChange.getKey(), resourceFile);
+            }
+        }
+        return resourceChanges.isEmpty() || applyChanges(resourceChanges);
+    }
+
+    /**
+     * Must be invoked before copying changed configuration files, to be able to detect when the application has
+     * reloaded its configuration.
+     *
+     * @return the number of configuration reloads so far, or -1 if they cannot be observed.
+     */
+    long expectConfigReload() {
+        configLock.lock();
+        try {
+            if (configListenerRegistered == null) {
+                configListenerRegistered = registerConfigListener();
+            }
+            return configListenerRegistered ? configReloadCount : -1;
+        } finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the application to reload its configuration.
+     *
+     * @param reloadCount the number of configuration reloads returned by {@link #expectConfigReload()}.
+     */
+    void awaitConfigReload(long reloadCount) {
+        long timeout = watchMojo.getConfigReloadTimeout();
+        if (reloadCount < 0) {
+            // Wait for the application to notice the change
+            watchMojo.getLog().info("A configuration file has changed, waiting for the application to notice it");
+            try {
+                Thread.sleep(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        watchMojo.getLog().info("A configuration file has changed, waiting for the application to reload it");
+        long startTime = System.currentTimeMillis();
+        configLock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (configReloadCount == reloadCount && remaining > 0) {
+                remaining = configReloaded.awaitNanos(remaining);
+            }
+            if (configReloadCount == reloadCount) {
+                watchMojo.getLog().warn("Configuration was not reloaded by the application after " + timeout + " ms");
+            } else {
+                watchMojo.getLog().info("Configuration reloaded in " + (System.currentTimeMillis() - startTime)
+                        + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            configLock.unlock();
+        }
+    }
+
+    private boolean registerConfigListener() {
+        try {
+            if (SeedStackUtils.addConfigListener(watchMojo.getApplicationClassLoader(), new Runnable() {
+                @Override
+                public void run() {
+                    configLock.lock();
+                    try {
+                        configReloadCount++;
+                        configReloaded.signalAll();
+                    } finally {
+                        configLock.unlock();
+                    }
                 }
+            })) {
+                watchMojo.getLog().debug("Listening to configuration reloads of the application");
+                return true;
             }
-            watchMojo.getLog().info("Updating resources");
-            copyResources();
-
-            if (configChanged) {
-                // Wait for the application to notice the change
-                watchMojo.getLog()
-                        .info("A configuration file has changed, waiting for the application to notice it");
-                try {
-                    Thread.sleep(2000);
-                } catch (InterruptedException e) {
-                    // ignore
+        } catch (Exception e) {
+            watchMojo.getLog().debug("Unable to listen to configuration reloads of the application", e);
+        }
+        return false;
+    }
+
+    /**
+     * Resolves a changed file against the resource directories of the project.
+     *
+     * @param changedFile   the changed file.
+     * @param canonicalPath the canonical path of the changed file.
+     * @return the resolved resource file or null if the file is not in a resource directory.
+     * @throws IOException if the path of a resource directory cannot be resolved.
+     */
+    ResourceFile resolveResourceFile(File changedFile, String canonicalPath) throws IOException {
+        String outputDirectory = context.getMavenProject().getBuild().getOutputDirectory();
+        for (Resource resource : context.getMavenProject().getResources()) {
+            String resourceDir = new File(resource.getDirectory()).getCanonicalPath() + File.separator;
+            if (canonicalPath.startsWith(resourceDir)) {
+                String relativePath = canonicalPath.substring(resourceDir.length());
+                String targetPath = resource.getTargetPath();
+                File targetDir;
+                if (targetPath == null || targetPath.isEmpty()) {
+                    targetDir = new File(outputDirectory);
+                } else {
+                    targetDir = new File(outputDirectory, targetPath);
                 }
+                return new ResourceFile(resource, relativePath, new File(targetDir, relativePath),
+                        configFileMatcher.matches(Paths.get(relativePath)));
             }
+        }
+        return null;
+    }
 
-            watchMojo.liveReload();
-        } catch (MojoExecutionException e) {
-            watchMojo.getLog().warn("An error occurred during resource copy, ignoring resource changes", e);
+    /**
+     * Determines the paths to notify to LiveReload clients after resource changes: the web paths of changed static
+     * assets, which allows browsers to update stylesheets and images in place, or the root path if any other resource
+     * has changed.
+     *
+     * @param resourceFiles the changed resource files.
+     * @return the paths to notify.
+     */
+    static Set<String> getLiveReloadPaths(Collection<ResourceFile> resourceFiles) {
+        Set<String> paths = new TreeSet<>();
+        for (ResourceFile resourceFile : resourceFiles) {
+            String webPath = resourceFile.getWebPath();
+            if (webPath == null) {
+                return Collections.singleton("/");
+            }
+            paths.add(webPath);
+        }
+        return paths;
+    }
+
+    private void deleteTargetFile(File targetFile) {
+        if (targetFile.exists() && !targetFile.delete()) {
+            watchMojo.getLog().warn("Unable to delete resource " + targetFile.getAbsolutePath());
         }
     }
 
-    private boolean isConfigFile(File file) {
-        String fileName = file.getName();
-        return fileName.equals("application.yaml")
-                || fileName.equals("application.override.yaml")
-                || fileName.equals("application.json")
-                || fileName.equals("application.override.json")
-                || fileName.equals("application.properties")
-                || fileName.equals("application.override.properties")
-                || file.getParentFile().getPath().endsWith("META-INF" + File.separator + "configuration");
+    private void copyResource(File sourceFile, File targetFile) throws MojoExecutionException {
+        try {
+            Files.createDirectories(targetFile.getParentFile().toPath());
+            Files.copy(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.COPY_ATTRIBUTES);
+        } catch (NoSuchFileException e) {
+            // Deleted since the change was detected, the deletion will be notified
+            watchMojo.getLog().debug("Resource disappeared before being copied: " + sourceFile.getPath());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to copy resource " + sourceFile.getAbsolutePath()
+                    + " to " + targetFile.getAbsolutePath(), e);
+        }
     }
 
     private void copyResources() throws MojoExecutionException {
@@ -106,27 +304,82 @@ public class ResourceChangeListener extends AbstractFileChangeListener {
         );
     }
 
-    private File resolveResourceFile(File changedFile) throws IOException {
-        String outputDirectory = context.getMavenProject().getBuild().getOutputDirectory();
-        for (Resource resource : context.getMavenProject().getResources()) {
-            try {
-                String resourceDir = new File(resource.getDirectory()).getCanonicalPath();
-                String filePath = changedFile.getCanonicalPath();
-                if (filePath.startsWith(resourceDir)) {
-                    String relativePath = filePath.substring(resourceDir.length());
-                    String targetPath = resource.getTargetPath();
-                    File targetDir;
-                    if (targetPath == null || targetPath.isEmpty()) {
-                        targetDir = new File(outputDirectory);
-                    } else {
-                        targetDir = new File(outputDirectory, targetPath);
-                    }
-                    return new File(targetDir, relativePath);
+    static class ResourceFile {
+        private final Resource resource;
+        private final String relativePath;
+        private final File targetFile;
+        private final boolean config;
+
+        ResourceFile(Resource resource, String relativePath, File targetFile, boolean config) {
+            this.resource = resource;
+            this.relativePath = relativePath;
+            this.targetFile = targetFile;
+            this.config = config;
+        }
+
+        boolean isConfig() {
+            return config;
+        }
+
+        /**
+         * Returns the path under which the file is served by the web container if it is a static asset.
+         *
+         * @return the web path of the file or null if it is not a static asset.
+         */
+        String getWebPath() {
+            String classpathPath = relativePath.replace(File.separatorChar, '/');
+            String targetPath = resource.getTargetPath();
+            if (targetPath != null && !targetPath.isEmpty()) {
+                targetPath = targetPath.replace('\\', '/');
+                classpathPath = (targetPath.endsWith("/") ? targetPath : targetPath + "/") + classpathPath;
+            }
+            if (classpathPath.startsWith("/")) {
+                classpathPath = classpathPath.substring(1);
+            }
+            if (classpathPath.startsWith(WEB_RESOURCES_PREFIX)) {
+                return classpathPath.substring(WEB_RESOURCES_PREFIX.length() - 1);
+            }
+            return null;
+        }
+
+        boolean isServedFromSource() {
+            String targetPath = resource.getTargetPath();
+            return !resource.isFiltering() && (targetPath == null || targetPath.isEmpty()) && isSelected();
+        }
+
+        private File getTargetFile() {
+            return targetFile;
+        }
+
+        private boolean isFiltered() {
+            return resource.isFiltering();
+        }
+
+        boolean isSelected() {
+            List<String> includes = resource.getIncludes();
+            if (includes != null && !includes.isEmpty() && !matchesAny(includes)) {
+                return false;
+            }
+            List<String> excludes = resource.getExcludes();
+            return excludes == null || !matchesAny(excludes);
+        }
+
+        private boolean matchesAny(List<String> patterns) {
+            for (String pattern : patterns) {
+                if (SelectorUtils.matchPath(normalizePattern(pattern), relativePath, true)) {
+                    return true;
                 }
-            } catch (IOException e) {
-                throw new IOException("Unable to resolve resource file path: " + changedFile.getAbsolutePath(), e);
             }
+            return false;
+        }
+
+        private static String normalizePattern(String pattern) {
+            // Same normalization as the DirectoryScanner used by the maven-resources-plugin
+            String normalized = pattern.trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+            if (normalized.endsWith(File.separator)) {
+                normalized += "**";
+            }
+            return normalized;
         }
-        return null;
     }
-}
\ No newline at end of file
+}
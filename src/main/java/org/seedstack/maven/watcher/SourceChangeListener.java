@@ -16,10 +16,17 @@ import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.objectweb.asm.ClassReader;
@@ -27,32 +34,79 @@ import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Opcodes;
 import org.seedstack.maven.Context;
 import org.seedstack.maven.WatchMojo;
+import org.seedstack.maven.classloader.ReloadUnit;
+import org.seedstack.maven.compiler.ClassDependencyIndex;
+import org.seedstack.maven.compiler.CompilationException;
+import org.seedstack.maven.compiler.IncrementalCompiler;
+import org.seedstack.maven.hotswap.HotSwapper;
 
-public class SourceChangeListener extends AbstractFileChangeListener {
+/**
+ * Applies source changes on behalf of the {@link ChangeRouter}: invalidation of affected classes, compilation and hot
+ * swapping.
+ */
+class SourceChangeListener implements Closeable {
     private static final String COMPILATION_FAILURE_EXCEPTION =
             "org.apache.maven.plugin.compiler.CompilationFailureException";
+    private final WatchMojo watchMojo;
+    private final Context context;
+    private IncrementalCompiler incrementalCompiler;
+    private boolean incrementalCompilerUnavailable;
+    private ClassDependencyIndex dependencyIndex;
+    private boolean dependencyIndexUnavailable;
+    private final HotSwapper hotSwapper;
 
-    public SourceChangeListener(WatchMojo watchMojo, Context context) {
-        super(watchMojo, context);
+    SourceChangeListener(WatchMojo watchMojo, Context context) {
+        this.watchMojo = watchMojo;
+        this.context = context;
+        this.hotSwapper = watchMojo.isHotSwap() ? new HotSwapper(watchMojo.getLog()) : null;
+        if (watchMojo.getReloadUnit() == ReloadUnit.COMPONENT) {
+            // Components are needed before the application loads any class
+            getDependencyIndex();
+            updateComponents();
+        }
     }
 
-    protected void refresh(Set<FileEvent> fileEvents) {
+    /**
+     * Invalidates the classes affected by source changes (including their dependents) and recompiles them along with
+     * their direct dependents. When enabled and only method bodies have changed, classes are hot swapped instead.
+     *
+     * @param fileEvents the source file events.
+     * @return the outcome, telling if the application needs to be refreshed.
+     */
+    Outcome applyChanges(Set<FileEvent> fileEvents) {
         try {
             Set<File> compiledFilesToRemove = new HashSet<>();
             Set<File> compiledFilesToUpdate = new HashSet<>();
+            Set<File> sourceFilesToCompile = new LinkedHashSet<>();
 
-            analyzeEvents(fileEvents, compiledFilesToRemove, compiledFilesToUpdate);
+            analyzeEvents(fileEvents, compiledFilesToRemove, compiledFilesToUpdate, sourceFilesToCompile);
 
             if (!compiledFilesToRemove.isEmpty() || !compiledFilesToUpdate.isEmpty()) {
                 watchMojo.getLog().info("Source change(s) detected");
 
+                // Index is built from class files before they change
+                ClassDependencyIndex dependencyIndex = getDependencyIndex();
+
+                // Sources compiled by a failed hot swap attempt and the classes they contained before
+                Set<File> compiledSourceFiles = new HashSet<>();
+                Set<String> previousClasses = new HashSet<>();
+                if (hotSwapper != null && compiledFilesToRemove.isEmpty() && isModificationOnly(fileEvents)) {
+                    Outcome outcome = tryHotSwap(compiledFilesToUpdate, sourceFilesToCompile, compiledSourceFiles,
+                            previousClasses);
+                    if (outcome != null) {
+                        return outcome;
+                    }
+                }
+
+                Set<String> affectedClasses = new HashSet<>();
                 try {
                     // Invalidate classes from source files that are gone
-                    Set<String> classesToInvalidate = analyzeClasses(compiledFilesToRemove);
-                    for (String s : classesToInvalidate) {
+                    Set<String> removedClasses = analyzeClasses(compiledFilesToRemove);
+                    for (String s : removedClasses) {
                         watchMojo.getLog().info("Invaliding updated class " + s);
                     }
-                    watchMojo.invalidateClasses(classesToInvalidate);
+                    affectedClasses.addAll(removedClasses);
+                    addInternalNames(affectedClasses, watchMojo.invalidateClasses(removedClasses));
                 } catch (RefreshException e) {
                     watchMojo.getLog().info("Cannot detect removed classes, invalidating all classes", e);
                     watchMojo.invalidateAllClasses();
@@ -63,25 +117,54 @@ public class SourceChangeListener extends AbstractFileChangeListener {
 
                 try {
                     // Invalidate classes from source files that have changed
-                    watchMojo.invalidateClasses(analyzeClasses(compiledFilesToUpdate));
+                    Set<String> changedClasses = analyzeClasses(compiledFilesToUpdate);
+                    changedClasses.addAll(previousClasses);
+                    affectedClasses.addAll(changedClasses);
+                    addInternalNames(affectedClasses, watchMojo.invalidateClasses(changedClasses));
                 } catch (RefreshException e) {
                     watchMojo.getLog().info("Cannot detect changed classes, invalidating all classes", e);
                     watchMojo.invalidateAllClasses();
                 }
 
-                // Invalidate generated classes
-                watchMojo.invalidateClassesFromPackage("org.seedstack.business.__generated");
+                Set<File> packageDirectories = new HashSet<>();
+                for (File file : compiledFilesToRemove) {
+                    packageDirectories.add(file.getParentFile());
+                }
+                for (File file : compiledFilesToUpdate) {
+                    packageDirectories.add(file.getParentFile());
+                }
 
-                // Recompile the sources
-                recompile();
+                if (dependencyIndex != null) {
+                    // Invalidate classes linked against affected classes, directly or not
+                    invalidateDependents(dependencyIndex, affectedClasses);
 
-                // Refresh the app
-                watchMojo.refresh();
+                    // Recompile direct dependents to catch incompatible changes and update inlined constants
+                    for (String dependentClass : dependencyIndex.getDependents(affectedClasses, false)) {
+                        String sourcePath = dependencyIndex.getSourcePath(dependentClass);
+                        File sourceFile = resolveSourceFile(sourcePath);
+                        if (sourceFile != null && sourceFilesToCompile.add(sourceFile)) {
+                            watchMojo.getLog().debug("DEPENDENT: " + sourceFile.getPath());
+                            packageDirectories.add(new File(context.getClassesDirectory(), sourcePath)
+                                    .getParentFile());
+                        }
+                    }
+                }
 
-                // Trigger LiveReload
-                watchMojo.liveReload();
+                // Invalidate generated classes
+                watchMojo.invalidateClassesFromPackage("org.seedstack.business.__generated");
 
-                watchMojo.getLog().info("Refresh complete");
+                try {
+                    // Recompile the sources, except those already compiled by the hot swap attempt
+                    sourceFilesToCompile.removeAll(compiledSourceFiles);
+                    recompile(sourceFilesToCompile);
+                } finally {
+                    updateDependencyIndex(packageDirectories);
+                    if (watchMojo.getReloadUnit() == ReloadUnit.COMPONENT) {
+                        updateComponents();
+                    }
+                }
+
+                return Outcome.RECOMPILED;
             }
         } catch (Exception e) {
             Throwable toLog = e.getCause();
@@ -90,10 +173,112 @@ public class SourceChangeListener extends AbstractFileChangeListener {
             }
             watchMojo.getLog().warn("An error occurred during application refresh, ignoring source changes", toLog);
         }
+        return Outcome.UNCHANGED;
+    }
+
+    private boolean isModificationOnly(Set<FileEvent> fileEvents) {
+        for (FileEvent fileEvent : fileEvents) {
+            if (fileEvent.getKind() != FileEvent.Kind.MODIFY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compiles the modified sources then redefines the loaded classes if only their method bodies changed. When
+     * falling back, the compiled sources and the classes they contained before are reported so the regular refresh
+     * can reuse the compilation.
+     *
+     * @return the outcome, or null if classes cannot be hot swapped and must be reloaded.
+     */
+    private Outcome tryHotSwap(Set<File> compiledFilesToUpdate, Set<File> sourceFilesToCompile,
+            Set<File> compiledSourceFiles, Set<String> previousClasses) throws IOException, RefreshException {
+        IncrementalCompiler compiler = getIncrementalCompiler();
+        if (compiler == null) {
+            return null;
+        }
+
+        Map<File, byte[]> oldClasses = readClassFiles(compiledFilesToUpdate);
+        try {
+            compiler.compile(sourceFilesToCompile);
+        } catch (CompilationException e) {
+            throw new RefreshException(e.getMessage(), e);
+        }
+        compiledSourceFiles.addAll(sourceFilesToCompile);
+        for (byte[] oldBytes : oldClasses.values()) {
+            try {
+                new ClassReader(oldBytes).accept(new ClassNameCollector(previousClasses), ClassReader.SKIP_CODE);
+            } catch (RuntimeException e) {
+                throw new RefreshException("Unable to analyze previous class version", e);
+            }
+        }
+        Map<File, byte[]> newClasses = readClassFiles(compiledFilesToUpdate);
+        if (!oldClasses.keySet().equals(newClasses.keySet())) {
+            watchMojo.getLog().debug("Classes were added or removed, cannot hot swap");
+            return null;
+        }
+
+        Map<Class<?>, byte[]> definitions = new HashMap<>();
+        Set<File> packageDirectories = new HashSet<>();
+        for (Map.Entry<File, byte[]> newClass : newClasses.entrySet()) {
+            byte[] oldBytes = oldClasses.get(newClass.getKey());
+            byte[] newBytes = newClass.getValue();
+            if (Arrays.equals(oldBytes, newBytes)) {
+                continue;
+            }
+            String className;
+            try {
+                if (!HotSwapper.isHotSwappable(oldBytes, newBytes)) {
+                    watchMojo.getLog().debug("Structure of " + newClass.getKey().getName() + " changed, cannot "
+                            + "hot swap");
+                    return null;
+                }
+                className = new ClassReader(newBytes).getClassName().replace('/', '.');
+            } catch (RuntimeException e) {
+                watchMojo.getLog().debug("Unable to analyze " + newClass.getKey().getName() + ", cannot hot swap", e);
+                return null;
+            }
+            Class<?> loadedClass = watchMojo.getLoadedSourceClass(className);
+            if (loadedClass != null) {
+                definitions.put(loadedClass, newBytes);
+            }
+            packageDirectories.add(newClass.getKey().getParentFile());
+        }
+
+        if (!definitions.isEmpty() && !hotSwapper.redefine(definitions)) {
+            return null;
+        }
+        updateDependencyIndex(packageDirectories);
+        watchMojo.getLog().info("Hot swapped " + definitions.size() + " class(es)");
+        return Outcome.HOT_SWAPPED;
+    }
+
+    private Map<File, byte[]> readClassFiles(Set<File> topLevelClassFiles) throws IOException {
+        Map<File, byte[]> classFiles = new HashMap<>();
+        for (File topLevelClassFile : topLevelClassFiles) {
+            String name = topLevelClassFile.getName();
+            final String innerClassPrefix = name.substring(0, name.length() - ".class".length()) + "$";
+            File[] files = topLevelClassFile.getParentFile().listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return file.getName().startsWith(innerClassPrefix) && file.getName().endsWith(".class");
+                }
+            });
+            if (files != null) {
+                for (File file : files) {
+                    classFiles.put(file, Files.readAllBytes(file.toPath()));
+                }
+            }
+            if (topLevelClassFile.isFile()) {
+                classFiles.put(topLevelClassFile, Files.readAllBytes(topLevelClassFile.toPath()));
+            }
+        }
+        return classFiles;
     }
 
     private void analyzeEvents(Set<FileEvent> fileEvents, Set<File> compiledFilesToRemove,
-            Set<File> compiledFilesToUpdate) throws MojoExecutionException {
+            Set<File> compiledFilesToUpdate, Set<File> sourceFilesToCompile) throws MojoExecutionException {
         for (FileEvent fileEvent : fileEvents) {
             File changedFile = fileEvent.getFile();
             if (!changedFile.isDirectory()) {
@@ -104,14 +289,22 @@ public class SourceChangeListener extends AbstractFileChangeListener {
                         if (canonicalChangedFile.startsWith(sourceRootPath + File.separator)
                                 && canonicalChangedFile.endsWith(".java")) {
                             if (fileEvent.getKind() == FileEvent.Kind.CREATE) {
+                                sourceFilesToCompile.add(changedFile);
+                                watchMojo.addSourceClass(resolveClassName(sourceRootPath, canonicalChangedFile),
+                                        sourceRootPath);
                                 watchMojo.getLog().debug("NEW: " + changedFile.getPath());
                                 compiledFilesToUpdate.add(resolveCompiledFile(sourceRootPath,
                                         canonicalChangedFile));
                             } else if (fileEvent.getKind() == FileEvent.Kind.MODIFY) {
+                                sourceFilesToCompile.add(changedFile);
+                                watchMojo.addSourceClass(resolveClassName(sourceRootPath, canonicalChangedFile),
+                                        sourceRootPath);
                                 watchMojo.getLog().debug("MODIFIED: " + changedFile.getPath());
                                 compiledFilesToUpdate.add(resolveCompiledFile(sourceRootPath,
                                         canonicalChangedFile));
                             } else if (fileEvent.getKind() == FileEvent.Kind.DELETE) {
+                                watchMojo.removeSourceClass(resolveClassName(sourceRootPath,
+                                        canonicalChangedFile));
                                 watchMojo.getLog().debug("DELETED: " + changedFile.getPath());
                                 compiledFilesToRemove.add(resolveCompiledFile(sourceRootPath,
                                         canonicalChangedFile));
@@ -132,6 +325,93 @@ public class SourceChangeListener extends AbstractFileChangeListener {
                 .replaceAll("\\.java$", ".class"));
     }
 
+    private String resolveClassName(String sourceRootPath, String changedFilePath) {
+        return changedFilePath
+                .substring(sourceRootPath.length() + 1, changedFilePath.length() - ".java".length())
+                .replace(File.separatorChar, '.');
+    }
+
+    private File resolveSourceFile(String sourcePath) {
+        if (sourcePath != null) {
+            for (String compileSourceRoot : context.getMavenProject().getCompileSourceRoots()) {
+                File sourceFile = new File(compileSourceRoot, sourcePath);
+                if (sourceFile.isFile()) {
+                    return sourceFile;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void invalidateDependents(ClassDependencyIndex dependencyIndex, Set<String> classNames) {
+        // Invalidated reload units may contain other classes, whose dependents must be invalidated as well
+        Set<String> invalidated = new HashSet<>(classNames);
+        Set<String> pending = dependencyIndex.getDependents(classNames, true);
+        while (!pending.isEmpty()) {
+            invalidated.addAll(pending);
+            Set<String> unitClasses = new HashSet<>();
+            addInternalNames(unitClasses, watchMojo.invalidateClasses(pending));
+            unitClasses.removeAll(invalidated);
+            invalidated.addAll(unitClasses);
+            pending = dependencyIndex.getDependents(unitClasses, true);
+            pending.removeAll(invalidated);
+        }
+        watchMojo.getLog().debug("Invalidated " + (invalidated.size() - classNames.size())
+                + " dependent class(es)");
+    }
+
+    private void updateComponents() {
+        if (dependencyIndex != null) {
+            Map<String, String> components = new HashMap<>();
+            for (Map.Entry<String, String> entry : dependencyIndex.getComponents().entrySet()) {
+                if (entry.getKey().indexOf('$') == -1) {
+                    components.put(entry.getKey().replace('/', '.'), entry.getValue().replace('/', '.'));
+                }
+            }
+            Set<String> invalidated = new HashSet<>();
+            addInternalNames(invalidated, watchMojo.updateComponents(components));
+            if (!invalidated.isEmpty()) {
+                invalidateDependents(dependencyIndex, invalidated);
+            }
+        }
+    }
+
+    private void addInternalNames(Set<String> internalNames, Set<String> classNames) {
+        for (String className : classNames) {
+            internalNames.add(className.replace('.', '/'));
+        }
+    }
+
+    private ClassDependencyIndex getDependencyIndex() {
+        if (dependencyIndex == null && !dependencyIndexUnavailable) {
+            long startTime = System.currentTimeMillis();
+            try {
+                dependencyIndex = new ClassDependencyIndex(context.getClassesDirectory());
+                int classCount = dependencyIndex.build();
+                watchMojo.getLog().debug("Indexed dependencies of " + classCount + " class(es) in "
+                        + (System.currentTimeMillis() - startTime) + " ms");
+            } catch (IOException e) {
+                watchMojo.getLog().warn("Unable to index class dependencies, dependent classes won't be reloaded", e);
+                dependencyIndex = null;
+                dependencyIndexUnavailable = true;
+            }
+        }
+        return dependencyIndex;
+    }
+
+    private void updateDependencyIndex(Set<File> packageDirectories) {
+        if (dependencyIndex != null) {
+            try {
+                for (File packageDirectory : packageDirectories) {
+                    dependencyIndex.update(packageDirectory);
+                }
+            } catch (IOException e) {
+                watchMojo.getLog().warn("Unable to update class dependencies, rebuilding index on next change", e);
+                dependencyIndex = null;
+            }
+        }
+    }
+
     private void removeFiles(Set<File> compiledFilesToRemove) throws RefreshException {
         for (File file : compiledFilesToRemove) {
             if (file.exists() && !file.delete()) {
@@ -161,15 +441,57 @@ public class SourceChangeListener extends AbstractFileChangeListener {
         return classNames;
     }
 
-    private void recompile() throws MojoExecutionException {
-        executeMojo(
-                plugin(groupId("org.apache.maven.plugins"), artifactId("maven-compiler-plugin"), version("3.7.0")),
-                goal("compile"),
-                configuration(),
-                executionEnvironment(context.getMavenProject(),
-                        context.getMavenSession(),
-                        context.getBuildPluginManager())
-        );
+    private void recompile(Set<File> sourceFiles) throws MojoExecutionException, RefreshException {
+        IncrementalCompiler compiler = getIncrementalCompiler();
+        if (compiler != null) {
+            try {
+                compiler.compile(sourceFiles);
+            } catch (CompilationException e) {
+                throw new RefreshException(e.getMessage(), e);
+            }
+        } else {
+            executeMojo(
+                    plugin(groupId("org.apache.maven.plugins"), artifactId("maven-compiler-plugin"),
+                            version("3.7.0")),
+                    goal("compile"),
+                    configuration(),
+                    executionEnvironment(context.getMavenProject(),
+                            context.getMavenSession(),
+                            context.getBuildPluginManager())
+            );
+        }
+    }
+
+    private IncrementalCompiler getIncrementalCompiler() {
+        if (incrementalCompiler == null && !incrementalCompilerUnavailable) {
+            try {
+                incrementalCompiler = IncrementalCompiler.create(watchMojo.getLog(), context.getMavenProject(),
+                        context.getClassesDirectory());
+            } catch (IOException e) {
+                watchMojo.getLog().warn("Unable to initialize in-process compiler, falling back to "
+                        + "maven-compiler-plugin", e);
+            }
+            incrementalCompilerUnavailable = incrementalCompiler == null;
+        }
+        return incrementalCompiler;
+    }
+
+    @Override
+    public void close() {
+        if (incrementalCompiler != null) {
+            try {
+                incrementalCompiler.close();
+            } catch (IOException e) {
+                watchMojo.getLog().debug("Unable to close the in-process compiler", e);
+            }
+            incrementalCompiler = null;
+        }
+    }
+
+    enum Outcome {
+        UNCHANGED,
+        HOT_SWAPPED,
+        RECOMPILED
     }
 
     private class ClassNameCollector extends ClassVisitor {
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of raw file system events for the {@link DirectoryWatcher}. Directories are registered one by one, the
+ * watcher takes care of recursion.
+ */
+public interface WatchBackend extends Closeable {
+    /**
+     * @return the name of the backend as used in logs.
+     */
+    String getName();
+
+    /**
+     * Starts watching the direct children of a directory. Registering an already watched directory has no effect.
+     *
+     * @param dir the directory to watch.
+     * @return true if the directory was not watched before, false otherwise.
+     * @throws IOException if the directory cannot be watched.
+     */
+    boolean register(Path dir) throws IOException;
+
+    /**
+     * Blocks until at least one event is available, then returns every event that is immediately available.
+     *
+     * @return the available events.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    List<PathEvent> take() throws InterruptedException;
+
+    /**
+     * Waits at most the given time for an event, then returns every event that is immediately available.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit    the unit of the timeout.
+     * @return the available events, empty if none arrived in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    List<PathEvent> poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * @return true if no directory is watched anymore.
+     */
+    boolean isEmpty();
+}
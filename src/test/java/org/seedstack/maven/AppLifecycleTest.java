@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AppLifecycleTest {
+    private AppLifecycle lifecycle;
+
+    @Before
+    public void setUp() {
+        lifecycle = new AppLifecycle(new SystemStreamLog());
+    }
+
+    @Test
+    public void startupCompletedBeforeAwait() throws Exception {
+        assertEquals(AppLifecycle.State.STARTING, lifecycle.getState());
+        lifecycle.started();
+        lifecycle.await(lifecycle.getStartup(), 100);
+        assertEquals(AppLifecycle.State.STARTED, lifecycle.getState());
+        assertTrue(lifecycle.getTimestamp(AppLifecycle.State.STARTED) >= 0);
+        assertEquals(-1, lifecycle.getTimestamp(AppLifecycle.State.REFRESHING));
+    }
+
+    @Test
+    public void startupFailure() throws Exception {
+        IllegalStateException failure = new IllegalStateException("boom");
+        lifecycle.failed(failure);
+        assertEquals(AppLifecycle.State.FAILED, lifecycle.getState());
+        try {
+            lifecycle.await(lifecycle.getStartup(), 0);
+            fail("startup should have failed");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        // Late transitions are ignored
+        lifecycle.started();
+        assertEquals(AppLifecycle.State.FAILED, lifecycle.getState());
+    }
+
+    @Test
+    public void startupError() throws Exception {
+        NoClassDefFoundError error = new NoClassDefFoundError("some/Class");
+        lifecycle.failed(error);
+        try {
+            lifecycle.await(lifecycle.getStartup(), 0);
+            fail("startup should have failed");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void stop() throws Exception {
+        lifecycle.stopped();
+        assertEquals(AppLifecycle.State.STOPPED, lifecycle.getState());
+        try {
+            lifecycle.await(lifecycle.getStartup(), 0);
+            fail("startup should have been cancelled by the stop");
+        } catch (IllegalStateException e) {
+            assertEquals("Application stopped", e.getMessage());
+        }
+        try {
+            lifecycle.requestRefresh(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            }, null);
+            fail("stopped application should not be refreshed");
+        } catch (IllegalStateException e) {
+            assertEquals("Cannot refresh application in state STOPPED", e.getMessage());
+        }
+    }
+
+    @Test
+    public void refreshRequestsCoalescedDuringRefresh() throws Exception {
+        lifecycle.started();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final AtomicInteger refreshCount = new AtomicInteger();
+            final CountDownLatch running = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            AppLifecycle.RefreshTask task = new AppLifecycle.RefreshTask() {
+                @Override
+                public void refresh() throws Exception {
+                    if (refreshCount.incrementAndGet() == 1) {
+                        running.countDown();
+                        release.await();
+                    }
+                }
+            };
+
+            CompletableFuture<Void> first = lifecycle.requestRefresh(executor, task);
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            assertEquals(AppLifecycle.State.REFRESHING, lifecycle.getState());
+            CompletableFuture<Void> followUp = lifecycle.requestRefresh(executor, task);
+            assertNotSame(first, followUp);
+            for (int i = 0; i < 5; i++) {
+                assertSame(followUp, lifecycle.requestRefresh(executor, task));
+            }
+            release.countDown();
+
+            lifecycle.await(first, 5000);
+            lifecycle.await(followUp, 5000);
+            assertEquals(2, refreshCount.get());
+            assertEquals(AppLifecycle.State.STARTED, lifecycle.getState());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
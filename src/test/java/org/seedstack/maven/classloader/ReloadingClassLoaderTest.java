@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.classloader;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReloadingClassLoaderTest {
+    private File directory;
+    private File sourceRoot;
+    private File classesDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("reloading").toFile();
+        sourceRoot = new File(directory, "src");
+        classesDirectory = new File(directory, "classes");
+        assertTrue(classesDirectory.mkdirs());
+        File a = writeSource("p/A.java", "package p; public class A { B b; }");
+        File b = writeSource("p/B.java", "package p; public class B { A a; }");
+        File c = writeSource("q/C.java", "package q; public class C { }");
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d",
+                classesDirectory.getPath(), a.getPath(), b.getPath(), c.getPath()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(directory);
+    }
+
+    @Test
+    public void classUnit() throws Exception {
+        ReloadingClassLoader classLoader = create(ReloadUnit.CLASS, Collections.<String, String>emptyMap());
+        assertNotSame(loaderOf(classLoader, "p.A"), loaderOf(classLoader, "p.B"));
+        assertNotSame(loaderOf(classLoader, "p.A"), loaderOf(classLoader, "q.C"));
+    }
+
+    @Test
+    public void packageUnit() throws Exception {
+        ReloadingClassLoader classLoader = create(ReloadUnit.PACKAGE, Collections.<String, String>emptyMap());
+        assertSame(loaderOf(classLoader, "p.A"), loaderOf(classLoader, "p.B"));
+        assertNotSame(loaderOf(classLoader, "p.A"), loaderOf(classLoader, "q.C"));
+    }
+
+    @Test
+    public void sourceRootUnit() throws Exception {
+        ReloadingClassLoader classLoader = create(ReloadUnit.SOURCE_ROOT, Collections.<String, String>emptyMap());
+        assertSame(loaderOf(classLoader, "p.A"), loaderOf(classLoader, "p.B"));
+        assertSame(loaderOf(classLoader, "p.A"), loaderOf(classLoader, "q.C"));
+    }
+
+    @Test
+    public void componentUnit() throws Exception {
+        Map<String, String> components = new HashMap<>();
+        components.put("p.A", "p.A");
+        components.put("p.B", "p.A");
+        components.put("q.C", "q.C");
+        ReloadingClassLoader classLoader = create(ReloadUnit.COMPONENT, components);
+        assertSame(loaderOf(classLoader, "p.A"), loaderOf(classLoader, "p.B"));
+        assertNotSame(loaderOf(classLoader, "p.A"), loaderOf(classLoader, "q.C"));
+    }
+
+    @Test
+    public void invalidateWholeUnit() throws Exception {
+        ReloadingClassLoader classLoader = create(ReloadUnit.PACKAGE, Collections.<String, String>emptyMap());
+        ClassLoader packageLoader = loaderOf(classLoader, "p.B");
+        ClassLoader otherLoader = loaderOf(classLoader, "q.C");
+        loaderOf(classLoader, "p.A");
+
+        assertTrue(classLoader.invalidateClasses(Collections.singleton("p/A")).contains("p.B"));
+        assertNotSame(packageLoader, loaderOf(classLoader, "p.B"));
+        assertSame(otherLoader, loaderOf(classLoader, "q.C"));
+    }
+
+    @Test
+    public void concurrentLoadAndInvalidation() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            final ReloadingClassLoader classLoader = create(ReloadUnit.PACKAGE,
+                    Collections.<String, String>emptyMap());
+            loaderOf(classLoader, "p.A");
+            final Set<ClassLoader> otherLoaders = Collections.newSetFromMap(
+                    new ConcurrentHashMap<ClassLoader, Boolean>());
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final boolean invalidating = i == 0;
+                threads.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int j = 0; j < 50; j++) {
+                                if (invalidating) {
+                                    classLoader.invalidateClasses(Collections.singleton("p/A"));
+                                    loaderOf(classLoader, "p.A");
+                                } else {
+                                    otherLoaders.add(loaderOf(classLoader, "q.C"));
+                                }
+                            }
+                        } catch (Throwable t) {
+                            failure.set(t);
+                        }
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNull(failure.get());
+            // The unit of q.C is never invalidated, so it must never be loaded twice
+            assertEquals(1, otherLoaders.size());
+        }
+    }
+
+    private ReloadingClassLoader create(ReloadUnit reloadUnit, Map<String, String> components) throws Exception {
+        URL[] urls = {classesDirectory.toURI().toURL()};
+        return new ReloadingClassLoader(new SystemStreamLog(), urls, urls,
+                Collections.singletonList(sourceRoot.getPath()), reloadUnit, components);
+    }
+
+    private ClassLoader loaderOf(ReloadingClassLoader classLoader, String className) throws Exception {
+        return classLoader.loadClass(className).getClassLoader();
+    }
+
+    private File writeSource(String path, String content) throws Exception {
+        File file = new File(sourceRoot, path);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        assertTrue(file.delete());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.compiler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClassDependencyIndexTest {
+    private File directory;
+    private ClassDependencyIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("dependencies").toFile();
+        // A and B form a cycle, C depends on A and D on C, E is independent
+        compile("A", "public class A { B b; }",
+                "B", "public class B { A a; }",
+                "C", "public class C { A a; }",
+                "D", "public class D { C c; }",
+                "E", "public class E { }");
+        index = new ClassDependencyIndex(directory);
+        assertEquals(5, index.build());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(directory);
+    }
+
+    @Test
+    public void directDependents() throws Exception {
+        assertEquals(set("p/A"), index.getDependents(Collections.singleton("p/B"), false));
+        assertEquals(set("p/B", "p/C"), index.getDependents(Collections.singleton("p/A"), false));
+        assertEquals(set(), index.getDependents(Collections.singleton("p/E"), false));
+    }
+
+    @Test
+    public void transitiveDependents() throws Exception {
+        assertEquals(set("p/A", "p/C", "p/D"), index.getDependents(Collections.singleton("p/B"), true));
+        assertEquals(set("p/D"), index.getDependents(Collections.singleton("p/C"), true));
+    }
+
+    @Test
+    public void componentsOfCycle() throws Exception {
+        Map<String, String> components = index.getComponents();
+        assertEquals("p/A", components.get("p/A"));
+        assertEquals("p/A", components.get("p/B"));
+        assertEquals("p/C", components.get("p/C"));
+        assertEquals("p/D", components.get("p/D"));
+        assertEquals("p/E", components.get("p/E"));
+    }
+
+    @Test
+    public void sourcePath() throws Exception {
+        assertEquals("p/C.java", index.getSourcePath("p/C"));
+    }
+
+    @Test
+    public void updateForgetsRemovedClasses() throws Exception {
+        File packageDirectory = new File(directory, "p");
+        assertTrue(new File(packageDirectory, "D.class").delete());
+        index.update(packageDirectory);
+        assertEquals(set(), index.getDependents(Collections.singleton("p/C"), true));
+    }
+
+    private void compile(String... namesAndBodies) throws Exception {
+        File sourceDirectory = new File(directory, "src");
+        // Java 8 class files are readable by any ASM version
+        List<String> arguments = new ArrayList<>(Arrays.asList("-source", "1.8", "-target", "1.8", "-nowarn", "-d",
+                directory.getPath()));
+        for (int i = 0; i < namesAndBodies.length; i += 2) {
+            File sourceFile = new File(sourceDirectory, "p/" + namesAndBodies[i] + ".java");
+            assertTrue(sourceFile.getParentFile().isDirectory() || sourceFile.getParentFile().mkdirs());
+            Files.write(sourceFile.toPath(), ("package p;\n" + namesAndBodies[i + 1] + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            arguments.add(sourceFile.getPath());
+        }
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                arguments.toArray(new String[0])));
+        delete(sourceDirectory);
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        assertTrue(file.delete());
+    }
+
+    private HashSet<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.compiler;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class IncrementalCompilerTest {
+    private Path directory;
+    private MavenProject mavenProject;
+    private Xpp3Dom configuration;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("compiler");
+        mavenProject = new MavenProject();
+        mavenProject.getBuild().setDirectory(directory.resolve("target").toString());
+        mavenProject.getBuild().setOutputDirectory(directory.resolve("classes").toString());
+        configuration = new Xpp3Dom("configuration");
+        Plugin plugin = new Plugin();
+        plugin.setGroupId("org.apache.maven.plugins");
+        plugin.setArtifactId("maven-compiler-plugin");
+        plugin.setConfiguration(configuration);
+        mavenProject.getBuild().addPlugin(plugin);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void releaseMapsToReleaseOption() throws Exception {
+        setting(configuration, "release", "8");
+        assertEquals(Arrays.asList("-g", "--release", "8"),
+                IncrementalCompiler.buildOptions(systemCompiler(), mavenProject, configuration));
+    }
+
+    @Test
+    public void releaseFallsBackToSourceAndTarget() throws Exception {
+        setting(configuration, "release", "8");
+        assertEquals(Arrays.asList("-g", "-source", "8", "-target", "8"),
+                IncrementalCompiler.buildOptions(compilerWithoutReleaseOption(), mavenProject, configuration));
+    }
+
+    @Test
+    public void sourceAndTargetFromProperties() throws Exception {
+        // Unresolved expressions are ignored in favor of properties
+        setting(configuration, "source", "${java.version}");
+        mavenProject.getProperties().setProperty("maven.compiler.source", "1.8");
+        mavenProject.getProperties().setProperty("maven.compiler.target", "1.8");
+        assertEquals(Arrays.asList("-g", "-source", "1.8", "-target", "1.8"),
+                IncrementalCompiler.buildOptions(systemCompiler(), mavenProject, configuration));
+    }
+
+    @Test
+    public void compilerArgsAreAppended() throws Exception {
+        setting(configuration, "parameters", "true");
+        Xpp3Dom compilerArgs = setting(configuration, "compilerArgs", null);
+        setting(compilerArgs, "arg", "-Xlint:all");
+        setting(compilerArgs, "arg", " -Werror ");
+        assertEquals(Arrays.asList("-g", "-parameters", "-Xlint:all", "-Werror"),
+                IncrementalCompiler.buildOptions(systemCompiler(), mavenProject, configuration));
+    }
+
+    @Test
+    public void encodingAppliesToSources() throws Exception {
+        setting(configuration, "encoding", "ISO-8859-1");
+        setting(configuration, "proc", "none");
+        Path source = directory.resolve("Latin.java");
+        Files.write(source, "public class Latin { public static final String VALUE = \"\u00e9t\u00e9\"; }"
+                .getBytes(StandardCharsets.ISO_8859_1));
+        File classes = new File(mavenProject.getBuild().getOutputDirectory());
+        Files.createDirectories(classes.toPath());
+
+        try (IncrementalCompiler compiler = IncrementalCompiler.create(new SystemStreamLog(), mavenProject,
+                classes)) {
+            assertNotNull(compiler);
+            compiler.compile(Collections.singleton(source.toFile()));
+        }
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, null)) {
+            assertEquals("\u00e9t\u00e9", classLoader.loadClass("Latin").getField("VALUE").get(null));
+        }
+    }
+
+    private Xpp3Dom setting(Xpp3Dom parent, String name, String value) {
+        Xpp3Dom child = new Xpp3Dom(name);
+        child.setValue(value);
+        parent.addChild(child);
+        return child;
+    }
+
+    private JavaCompiler systemCompiler() {
+        return ToolProvider.getSystemJavaCompiler();
+    }
+
+    private JavaCompiler compilerWithoutReleaseOption() {
+        final JavaCompiler compiler = systemCompiler();
+        return (JavaCompiler) Proxy.newProxyInstance(JavaCompiler.class.getClassLoader(),
+                new Class<?>[]{JavaCompiler.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("isSupportedOption".equals(method.getName())) {
+                            return -1;
+                        }
+                        return method.invoke(compiler, args);
+                    }
+                });
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.hotswap;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HotSwapperTest {
+    private static final String ORIGINAL = "public class Sample {\n"
+            + "    static final int LIMIT = 10;\n"
+            + "    private int count;\n"
+            + "    public int next() { return count++; }\n"
+            + "}\n";
+
+    @Test
+    public void methodBodyChangeIsHotSwappable() throws Exception {
+        assertTrue(HotSwapper.isHotSwappable(compile(ORIGINAL),
+                compile(ORIGINAL.replace("return count++;", "count += 2; return count;"))));
+    }
+
+    @Test
+    public void addedMethodIsNotHotSwappable() throws Exception {
+        assertFalse(HotSwapper.isHotSwappable(compile(ORIGINAL),
+                compile(ORIGINAL.replace("}\n}", "}\n    public void reset() { count = 0; }\n}"))));
+    }
+
+    @Test
+    public void addedFieldIsNotHotSwappable() throws Exception {
+        assertFalse(HotSwapper.isHotSwappable(compile(ORIGINAL),
+                compile(ORIGINAL.replace("private int count;", "private int count;\n    private int total;"))));
+    }
+
+    @Test
+    public void changedConstantIsNotHotSwappable() throws Exception {
+        assertFalse(HotSwapper.isHotSwappable(compile(ORIGINAL),
+                compile(ORIGINAL.replace("LIMIT = 10", "LIMIT = 20"))));
+    }
+
+    private byte[] compile(String source) throws Exception {
+        Path directory = Files.createTempDirectory("hotswap");
+        try {
+            Path sourceFile = directory.resolve("Sample.java");
+            Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            // Java 8 class files are readable by any ASM version
+            assertEquals(0, compiler.run(null, null, null, "-source", "1.8", "-target", "1.8", "-nowarn", "-d",
+                    directory.toString(), sourceFile.toString()));
+            return Files.readAllBytes(directory.resolve("Sample.class"));
+        } finally {
+            for (File file : directory.toFile().listFiles()) {
+                file.delete();
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.livereload;
+
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LRServerTest {
+    private static final String KEY = "dGhlIHNhbXBsZSBub25jZQ==";
+    private LRServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LRServer(0);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void servesScript() throws Exception {
+        try (Socket socket = connect()) {
+            write(socket, "GET /livereload.js?port=35729 HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            String head = readHead(input);
+            assertTrue(head, head.startsWith("HTTP/1.1 200 OK\r\n"));
+            assertTrue(head, head.contains("Content-Type: application/javascript\r\n"));
+            byte[] script = server.getScript();
+            assertTrue(head, head.contains("Content-Length: " + script.length + "\r\n"));
+            byte[] body = new byte[script.length];
+            input.readFully(body);
+            assertArrayEquals(script, body);
+        }
+    }
+
+    @Test
+    public void upgradesAndAnswersHello() throws Exception {
+        try (Socket socket = connect()) {
+            DataInputStream input = upgrade(socket);
+            sendText(socket, "{\"command\":\"hello\",\"protocols\":[\"http://livereload.com/protocols/official-7\"]}");
+            WebSocketCodec.Frame hello = readFrame(input);
+            assertEquals(WebSocketCodec.OPCODE_TEXT, hello.getOpcode());
+            assertEquals("hello", parse(hello).get("command"));
+
+            server.notifyChange("/css/style.css");
+            Map<?, ?> reload = parse(readFrame(input));
+            assertEquals("reload", reload.get("command"));
+            assertEquals("/css/style.css", reload.get("path"));
+        }
+    }
+
+    @Test
+    public void closesOnBinaryFrame() throws Exception {
+        assertClosedAsUnsupported(0x82);
+    }
+
+    @Test
+    public void closesOnFragmentedFrame() throws Exception {
+        // Text frame without the FIN bit
+        assertClosedAsUnsupported(0x01);
+    }
+
+    private void assertClosedAsUnsupported(int first) throws IOException {
+        try (Socket socket = connect()) {
+            DataInputStream input = upgrade(socket);
+            sendFrame(socket, first, new byte[]{1, 2, 3});
+            WebSocketCodec.Frame close = readFrame(input);
+            assertEquals(WebSocketCodec.OPCODE_CLOSE, close.getOpcode());
+            assertArrayEquals(new byte[]{0x03, (byte) 0xEB}, close.getPayload());
+            assertEquals(-1, input.read());
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private DataInputStream upgrade(Socket socket) throws IOException {
+        write(socket, "GET /livereload HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + KEY + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + "\r\n");
+        DataInputStream input = new DataInputStream(socket.getInputStream());
+        String head = readHead(input);
+        assertTrue(head, head.startsWith("HTTP/1.1 101 Switching Protocols\r\n"));
+        assertTrue(head, head.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo=\r\n"));
+        return input;
+    }
+
+    private void write(Socket socket, String data) throws IOException {
+        OutputStream output = socket.getOutputStream();
+        output.write(data.getBytes(StandardCharsets.ISO_8859_1));
+        output.flush();
+    }
+
+    private void sendText(Socket socket, String text) throws IOException {
+        sendFrame(socket, 0x81, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendFrame(Socket socket, int first, byte[] payload) throws IOException {
+        // Client frames are masked, payloads used here are shorter than 126 bytes
+        byte[] mask = {0x12, 0x34, 0x56, 0x78};
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(first);
+        frame.write(0x80 | payload.length);
+        frame.write(mask);
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ mask[i % 4]);
+        }
+        OutputStream output = socket.getOutputStream();
+        output.write(frame.toByteArray());
+        output.flush();
+    }
+
+    private Map<?, ?> parse(WebSocketCodec.Frame frame) {
+        return (Map<?, ?>) JSONValue.parse(frame.getText());
+    }
+
+    private String readHead(InputStream input) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString("ISO-8859-1").endsWith("\r\n\r\n")) {
+            int b = input.read();
+            assertTrue("connection closed before end of head", b != -1);
+            head.write(b);
+        }
+        return head.toString("ISO-8859-1");
+    }
+
+    private WebSocketCodec.Frame readFrame(DataInputStream input) throws IOException {
+        // Server frames are not masked, payloads used here are shorter than 65536 bytes
+        byte[] header = new byte[2];
+        input.readFully(header);
+        int length = header[1] & 0x7F;
+        byte[] extendedLength = new byte[length == 126 ? 2 : 0];
+        input.readFully(extendedLength);
+        if (length == 126) {
+            length = ByteBuffer.wrap(extendedLength).getShort() & 0xFFFF;
+        }
+        byte[] payload = new byte[length];
+        input.readFully(payload);
+        ByteBuffer frame = ByteBuffer.allocate(header.length + extendedLength.length + length);
+        frame.put(header).put(extendedLength).put(payload);
+        frame.flip();
+        return WebSocketCodec.decode(frame, length);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.livereload;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WebSocketCodecTest {
+    @Test
+    public void acceptKey() throws Exception {
+        // Sample handshake of RFC 6455
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", WebSocketCodec.acceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+    }
+
+    @Test
+    public void decodeMaskedText() throws Exception {
+        // Masked "Hello" sample of RFC 6455
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{
+                (byte) 0x81, (byte) 0x85, 0x37, (byte) 0xfa, 0x21, 0x3d, 0x7f, (byte) 0x9f, 0x4d, 0x51, 0x58});
+        WebSocketCodec.Frame frame = WebSocketCodec.decode(buffer, 1024);
+        assertTrue(frame.isFin());
+        assertEquals(WebSocketCodec.OPCODE_TEXT, frame.getOpcode());
+        assertEquals("Hello", frame.getText());
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void decodeIncompleteFrame() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{(byte) 0x81, (byte) 0x85, 0x37, (byte) 0xfa});
+        assertNull(WebSocketCodec.decode(buffer, 1024));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void encodeExtendedLength() throws Exception {
+        byte[] payload = new byte[300];
+        ByteBuffer buffer = WebSocketCodec.encode(WebSocketCodec.OPCODE_TEXT, payload);
+        assertEquals(304, buffer.remaining());
+        assertEquals((byte) 0x81, buffer.get(0));
+        assertEquals(126, buffer.get(1));
+        WebSocketCodec.Frame frame = WebSocketCodec.decode(buffer, 1024);
+        assertArrayEquals(payload, frame.getPayload());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectTooLargeFrame() throws Exception {
+        WebSocketCodec.decode(WebSocketCodec.encode(WebSocketCodec.OPCODE_TEXT, new byte[2048]), 1024);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractFileChangeListenerTest {
+    private final BlockingQueue<Set<FileEvent>> batches = new LinkedBlockingQueue<>();
+    private final CountDownLatch firstBatchReleased = new CountDownLatch(1);
+    private final AbstractFileChangeListener listener = new AbstractFileChangeListener(null, null) {
+        @Override
+        protected void refresh(Set<FileEvent> fileEventsToProcess) {
+            batches.add(fileEventsToProcess);
+            try {
+                firstBatchReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    };
+
+    @Test
+    public void changesAreCoalescedByFile() throws Exception {
+        try {
+            File a = new File("A.java");
+            File b = new File("B.java");
+            listener.onChange(event(FileEvent.Kind.MODIFY, a));
+            assertEquals(event(FileEvent.Kind.MODIFY, a), batches.poll(5, TimeUnit.SECONDS));
+
+            // Queued while the first batch is being processed
+            listener.onChange(event(FileEvent.Kind.DELETE, a));
+            listener.onChange(event(FileEvent.Kind.CREATE, a));
+            listener.onChange(event(FileEvent.Kind.CREATE, b));
+            listener.onChange(event(FileEvent.Kind.MODIFY, b));
+            firstBatchReleased.countDown();
+
+            Set<FileEvent> expected = new HashSet<>();
+            expected.add(new FileEvent(FileEvent.Kind.MODIFY, a));
+            expected.add(new FileEvent(FileEvent.Kind.CREATE, b));
+            assertEquals(expected, batches.poll(5, TimeUnit.SECONDS));
+        } finally {
+            listener.close();
+        }
+    }
+
+    @Test
+    public void watcherWaitsWhenTooManyFilesArePending() throws Exception {
+        try {
+            listener.onChange(event(FileEvent.Kind.MODIFY, new File("first")));
+            assertEquals(1, batches.poll(5, TimeUnit.SECONDS).size());
+
+            final Set<FileEvent> fileEvents = new HashSet<>();
+            for (int i = 0; i < 10001; i++) {
+                fileEvents.add(new FileEvent(FileEvent.Kind.MODIFY, new File("file" + i)));
+            }
+            Thread watcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onChange(fileEvents);
+                }
+            });
+            watcher.start();
+            watcher.join(500);
+            assertTrue("watcher should wait for pending changes to be processed", watcher.isAlive());
+
+            firstBatchReleased.countDown();
+            watcher.join(5000);
+            assertFalse(watcher.isAlive());
+            int processed = 0;
+            while (processed < 10001) {
+                Set<FileEvent> batch = batches.poll(5, TimeUnit.SECONDS);
+                assertTrue(batch != null && batch.size() <= 10000);
+                processed += batch.size();
+            }
+            assertEquals(10001, processed);
+        } finally {
+            listener.close();
+        }
+    }
+
+    private Set<FileEvent> event(FileEvent.Kind kind, File file) {
+        return Collections.singleton(new FileEvent(kind, file));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.seedstack.maven.Context;
+import org.seedstack.maven.WatchMojo;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeRouterTest {
+    private File directory;
+    private File sourceRoot;
+    private ChangeRouter changeRouter;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("router").toFile();
+        sourceRoot = new File(directory, "src/main/java");
+        File resourceRoot = new File(directory, "src/main/resources");
+        assertTrue(sourceRoot.mkdirs() && resourceRoot.mkdirs());
+
+        MavenProject mavenProject = new MavenProject();
+        mavenProject.getBuild().setOutputDirectory(new File(directory, "target/classes").getPath());
+        mavenProject.addCompileSourceRoot(sourceRoot.getPath());
+        // Resources declared inside the source root, next to the classes using them
+        Resource sourceResources = new Resource();
+        sourceResources.setDirectory(sourceRoot.getPath());
+        sourceResources.setIncludes(Collections.singletonList("**/*.xml"));
+        mavenProject.addResource(sourceResources);
+        Resource resources = new Resource();
+        resources.setDirectory(resourceRoot.getPath());
+        mavenProject.addResource(resources);
+
+        Context context = new Context(null, new SystemStreamLog(), new File(directory, "target/classes"),
+                new File(directory, "target/test-classes"), mavenProject, null, null);
+        changeRouter = new ChangeRouter(new WatchMojo(), context);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        changeRouter.close();
+        delete(directory);
+    }
+
+    @Test
+    public void resourcesInsideSourceRootAreNotSources() throws Exception {
+        FileEvent source = new FileEvent(FileEvent.Kind.MODIFY, new File(sourceRoot, "org/acme/Mapper.java"));
+        FileEvent mapping = new FileEvent(FileEvent.Kind.MODIFY, new File(sourceRoot, "org/acme/Mapper.xml"));
+        FileEvent config = new FileEvent(FileEvent.Kind.MODIFY,
+                new File(directory, "src/main/resources/application.yaml"));
+        Set<FileEvent> fileEvents = new HashSet<>();
+        fileEvents.add(source);
+        fileEvents.add(mapping);
+        fileEvents.add(config);
+
+        Set<FileEvent> sourceEvents = new HashSet<>();
+        Map<FileEvent, ResourceChangeListener.ResourceFile> resourceChanges = new HashMap<>();
+        Map<FileEvent, ResourceChangeListener.ResourceFile> configChanges = new HashMap<>();
+        changeRouter.classify(fileEvents, sourceEvents, resourceChanges, configChanges);
+
+        assertEquals(Collections.singleton(source), sourceEvents);
+        assertEquals(Collections.singleton(mapping), resourceChanges.keySet());
+        assertTrue(resourceChanges.get(mapping).isSelected());
+        assertEquals(Collections.singleton(config), configChanges.keySet());
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        assertTrue(file.delete());
+    }
+}
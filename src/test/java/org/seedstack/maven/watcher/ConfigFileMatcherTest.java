@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigFileMatcherTest {
+    @Test
+    public void defaultConfigFiles() throws Exception {
+        ConfigFileMatcher configFileMatcher = new ConfigFileMatcher(null);
+        assertTrue(configFileMatcher.matches(Paths.get("application.yaml")));
+        assertTrue(configFileMatcher.matches(Paths.get("config", "application.override.properties")));
+        assertTrue(configFileMatcher.matches(Paths.get("META-INF", "configuration", "some.yaml")));
+        assertFalse(configFileMatcher.matches(Paths.get("META-INF", "resources", "application.js")));
+        assertFalse(configFileMatcher.matches(Paths.get("application-dev.yaml")));
+    }
+
+    @Test
+    public void additionalConfigFiles() throws Exception {
+        ConfigFileMatcher configFileMatcher = new ConfigFileMatcher(
+                Collections.singletonList("**/application-*.yaml"));
+        assertTrue(configFileMatcher.matches(Paths.get("application-dev.yaml")));
+        assertTrue(configFileMatcher.matches(Paths.get("profiles", "application-prod.yaml")));
+        assertTrue(configFileMatcher.matches(Paths.get("application.yaml")));
+    }
+}
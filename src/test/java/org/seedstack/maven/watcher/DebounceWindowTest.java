@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DebounceWindowTest {
+    @Test
+    public void quietPeriod() throws Exception {
+        DebounceWindow debounceWindow = new DebounceWindow(100, 400, 10000);
+        debounceWindow.open();
+        assertEquals(100, debounceWindow.nextWait());
+        debounceWindow.extend(1);
+        assertEquals(100, debounceWindow.nextWait());
+        assertEquals(1, debounceWindow.eventCount());
+    }
+
+    @Test
+    public void maxQuietPeriod() throws Exception {
+        DebounceWindow debounceWindow = new DebounceWindow(100, 300, 10000);
+        debounceWindow.open();
+        debounceWindow.extend(10);
+        assertEquals(200, debounceWindow.nextWait());
+        debounceWindow.extend(50);
+        assertEquals(300, debounceWindow.nextWait());
+        debounceWindow.extend(50);
+        assertEquals(300, debounceWindow.nextWait());
+        assertEquals(110, debounceWindow.eventCount());
+
+        // Reopening resets the quiet period
+        debounceWindow.open();
+        assertEquals(100, debounceWindow.nextWait());
+        assertEquals(0, debounceWindow.eventCount());
+    }
+
+    @Test
+    public void maxDelay() throws Exception {
+        DebounceWindow debounceWindow = new DebounceWindow(100, 100, 150);
+        debounceWindow.open();
+        Thread.sleep(100);
+        long nextWait = debounceWindow.nextWait();
+        assertTrue("wait of " + nextWait + " ms exceeds max delay", nextWait <= 50);
+        Thread.sleep(60);
+        assertEquals(0, debounceWindow.nextWait());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSettings() throws Exception {
+        new DebounceWindow(500, 100, 1000);
+    }
+}
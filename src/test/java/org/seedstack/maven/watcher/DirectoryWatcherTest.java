@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class DirectoryWatcherTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("watcher");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void overflowRescansOnlyAffectedRoot() throws Exception {
+        Path subA = Files.createDirectories(directory.resolve("a").resolve("sub"));
+        Path rootB = Files.createDirectories(directory.resolve("b"));
+        Files.write(rootB.resolve("existing.txt"), "existing".getBytes("UTF-8"));
+
+        final List<PathEvent> events = new ArrayList<>();
+        final Set<FileEvent> detected = new HashSet<>();
+        DirectoryWatcher watcher = new DirectoryWatcher(new SystemStreamLog(), new FileChangeListener() {
+            @Override
+            public void onChange(Set<FileEvent> fileEvents) {
+                detected.addAll(fileEvents);
+            }
+        }, new ScriptedWatchBackend(events), directory.resolve("fingerprints.idx").toFile(), 0, 0, 0);
+        watcher.watchRecursively(directory.resolve("a"));
+        watcher.watchRecursively(rootB);
+
+        // Changes whose events were lost in both roots
+        Path lostInA = Files.write(subA.resolve("lost.txt"), "lost".getBytes("UTF-8"));
+        Files.write(rootB.resolve("lost.txt"), "lost".getBytes("UTF-8"));
+        Files.delete(rootB.resolve("existing.txt"));
+        // Overflow reported for a sub-directory of the first root only
+        events.add(new PathEvent(StandardWatchEventKinds.OVERFLOW, subA));
+        watcher.run();
+
+        assertEquals(Collections.singleton(new FileEvent(FileEvent.Kind.CREATE, lostInA.toFile())), detected);
+    }
+
+    /**
+     * Backend delivering a fixed list of events once, then reporting that nothing is watched anymore.
+     */
+    private static class ScriptedWatchBackend implements WatchBackend {
+        private final List<PathEvent> events;
+        private boolean taken;
+
+        ScriptedWatchBackend(List<PathEvent> events) {
+            this.events = events;
+        }
+
+        @Override
+        public String getName() {
+            return "scripted";
+        }
+
+        @Override
+        public boolean register(Path dir) {
+            return true;
+        }
+
+        @Override
+        public List<PathEvent> take() {
+            taken = true;
+            return new ArrayList<>(events);
+        }
+
+        @Override
+        public List<PathEvent> poll(long timeout, TimeUnit unit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return taken;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // nothing to release
+        }
+    }
+}
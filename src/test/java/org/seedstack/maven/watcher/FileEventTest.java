@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.seedstack.maven.watcher.FileEvent.Kind.CREATE;
+import static org.seedstack.maven.watcher.FileEvent.Kind.DELETE;
+import static org.seedstack.maven.watcher.FileEvent.Kind.MODIFY;
+
+public class FileEventTest {
+    @Test
+    public void createThen() throws Exception {
+        assertEquals(CREATE, CREATE.then(CREATE));
+        assertEquals(CREATE, CREATE.then(MODIFY));
+        assertEquals(DELETE, CREATE.then(DELETE));
+    }
+
+    @Test
+    public void modifyThen() throws Exception {
+        assertEquals(CREATE, MODIFY.then(CREATE));
+        assertEquals(MODIFY, MODIFY.then(MODIFY));
+        assertEquals(DELETE, MODIFY.then(DELETE));
+    }
+
+    @Test
+    public void deleteThen() throws Exception {
+        assertEquals(MODIFY, DELETE.then(CREATE));
+        assertEquals(MODIFY, DELETE.then(MODIFY));
+        assertEquals(DELETE, DELETE.then(DELETE));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FingerprintIndexTest {
+    private static final Path A = Paths.get("src", "A.java");
+    private static final Path B = Paths.get("src", "B.java");
+    private File directory;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("fingerprints").toFile();
+        indexFile = new File(directory, "fingerprints.idx");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public void restoreFromPreviousSession() throws Exception {
+        FingerprintIndex index = new FingerprintIndex(new SystemStreamLog(), indexFile);
+        assertFalse(index.isRestored());
+        index.put(A, fingerprint(10, 1000));
+        index.put(B, fingerprint(20, 2000));
+        index.put(A, fingerprint(11, 1100));
+        index.remove(B);
+        index.flush();
+        index.close();
+
+        FingerprintIndex restored = new FingerprintIndex(new SystemStreamLog(), indexFile);
+        try {
+            assertTrue(restored.isRestored());
+            assertFingerprint(11, 1100, restored.get(A));
+            assertNull(restored.get(B));
+        } finally {
+            restored.close();
+        }
+    }
+
+    @Test
+    public void restoreTruncatedLog() throws Exception {
+        FingerprintIndex index = new FingerprintIndex(new SystemStreamLog(), indexFile);
+        index.put(A, fingerprint(10, 1000));
+        index.put(B, fingerprint(20, 2000));
+        index.close();
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.setLength(file.length() - 4);
+        }
+
+        FingerprintIndex restored = new FingerprintIndex(new SystemStreamLog(), indexFile);
+        try {
+            assertFingerprint(10, 1000, restored.get(A));
+            assertNull(restored.get(B));
+        } finally {
+            restored.close();
+        }
+    }
+
+    @Test
+    public void compactObsoleteRecords() throws Exception {
+        FingerprintIndex index = new FingerprintIndex(new SystemStreamLog(), indexFile);
+        try {
+            index.put(A, fingerprint(0, 0));
+            index.flush();
+            long singleRecordLength = indexFile.length();
+            for (int i = 1; i <= 10000; i++) {
+                index.put(A, fingerprint(i, i));
+            }
+            index.flush();
+            assertEquals(singleRecordLength, indexFile.length());
+            assertFingerprint(10000, 10000, index.get(A));
+        } finally {
+            index.close();
+        }
+
+        FingerprintIndex restored = new FingerprintIndex(new SystemStreamLog(), indexFile);
+        try {
+            assertFingerprint(10000, 10000, restored.get(A));
+        } finally {
+            restored.close();
+        }
+    }
+
+    private void assertFingerprint(long size, long lastModified, FileFingerprint fingerprint) {
+        assertNotNull(fingerprint);
+        assertEquals(size, fingerprint.getSize());
+        assertEquals(lastModified, fingerprint.getLastModified());
+    }
+
+    private FileFingerprint fingerprint(long size, long lastModified) {
+        return new FileFingerprint(size, lastModified, null, lastModified, FileFingerprint.UNKNOWN_CHECKSUM);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PollingWatchBackendTest {
+    private Path directory;
+    private PollingWatchBackend backend;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("polling");
+        backend = new PollingWatchBackend(10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        backend.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void detectsCreateModifyAndDelete() throws Exception {
+        assertTrue(backend.register(directory));
+        assertFalse(backend.register(directory));
+        assertTrue(backend.poll(30, TimeUnit.MILLISECONDS).isEmpty());
+
+        Path file = Files.write(directory.resolve("A.java"), "class A {}".getBytes("UTF-8"));
+        assertSingleEvent(StandardWatchEventKinds.ENTRY_CREATE, file, backend.take());
+
+        Files.write(file, "class A { int a; }".getBytes("UTF-8"));
+        assertSingleEvent(StandardWatchEventKinds.ENTRY_MODIFY, file, backend.take());
+
+        Files.delete(file);
+        assertSingleEvent(StandardWatchEventKinds.ENTRY_DELETE, file, backend.take());
+    }
+
+    @Test
+    public void forgetsDeletedDirectory() throws Exception {
+        Path subDirectory = Files.createDirectory(directory.resolve("sub"));
+        Path file = Files.write(subDirectory.resolve("A.java"), "class A {}".getBytes("UTF-8"));
+        assertTrue(backend.register(subDirectory));
+
+        Files.delete(file);
+        Files.delete(subDirectory);
+        assertSingleEvent(StandardWatchEventKinds.ENTRY_DELETE, file, backend.take());
+        assertTrue(backend.isEmpty());
+    }
+
+    @Test(expected = ClosedWatchServiceException.class)
+    public void closedBackendCannotBePolled() throws Exception {
+        backend.register(directory);
+        backend.close();
+        backend.poll(30, TimeUnit.MILLISECONDS);
+    }
+
+    private void assertSingleEvent(WatchEvent.Kind<?> kind, Path path, List<PathEvent> events) {
+        assertEquals(1, events.size());
+        assertEquals(kind, events.get(0).getKind());
+        assertEquals(path, events.get(0).getPath());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.seedstack.maven.SeedStackUtils;
+import org.seedstack.maven.WatchMojo;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceChangeListenerTest {
+    private static final long CONFIG_RELOAD_TIMEOUT = 300;
+    private URLClassLoader applicationClassLoader;
+    private ResourceChangeListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        // Application without SeedStack nor Coffig classes
+        applicationClassLoader = new URLClassLoader(new URL[0], null);
+        listener = new ResourceChangeListener(new WatchMojo() {
+            @Override
+            public ClassLoader getApplicationClassLoader() {
+                return applicationClassLoader;
+            }
+
+            @Override
+            public long getConfigReloadTimeout() {
+                return CONFIG_RELOAD_TIMEOUT;
+            }
+        }, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        applicationClassLoader.close();
+    }
+
+    @Test
+    public void configReloadFallsBackToTimeout() throws Exception {
+        assertFalse(SeedStackUtils.addConfigListener(applicationClassLoader, new Runnable() {
+            @Override
+            public void run() {
+                // never invoked
+            }
+        }));
+
+        long reloadCount = listener.expectConfigReload();
+        assertEquals(-1, reloadCount);
+        long startTime = System.currentTimeMillis();
+        listener.awaitConfigReload(reloadCount);
+        assertTrue(System.currentTimeMillis() - startTime >= CONFIG_RELOAD_TIMEOUT);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2013-2021, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.maven.watcher;
+
+import org.apache.maven.model.Resource;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceFileTest {
+    @Test
+    public void webPath() throws Exception {
+        Resource resource = new Resource();
+        assertEquals("/css/app.css", resourceFile(resource, "META-INF/resources/css/app.css").getWebPath());
+        assertNull(resourceFile(resource, "META-INF/configuration/app.yaml").getWebPath());
+        assertNull(resourceFile(resource, "css/app.css").getWebPath());
+    }
+
+    @Test
+    public void webPathWithTargetPath() throws Exception {
+        Resource resource = new Resource();
+        resource.setTargetPath("META-INF/resources");
+        assertEquals("/img/logo.png", resourceFile(resource, "img/logo.png").getWebPath());
+        resource.setTargetPath("/META-INF/resources/static/");
+        assertEquals("/static/img/logo.png", resourceFile(resource, "img/logo.png").getWebPath());
+        resource.setTargetPath("assets");
+        assertNull(resourceFile(resource, "img/logo.png").getWebPath());
+    }
+
+    @Test
+    public void liveReloadPaths() throws Exception {
+        Resource resource = new Resource();
+        ResourceChangeListener.ResourceFile stylesheet = resourceFile(resource, "META-INF/resources/css/app.css");
+        ResourceChangeListener.ResourceFile image = resourceFile(resource, "META-INF/resources/img/logo.png");
+        ResourceChangeListener.ResourceFile other = resourceFile(resource, "data/values.csv");
+        assertEquals(new HashSet<>(Arrays.asList("/css/app.css", "/img/logo.png")),
+                ResourceChangeListener.getLiveReloadPaths(Arrays.asList(stylesheet, image)));
+        assertEquals(Collections.singleton("/"),
+                ResourceChangeListener.getLiveReloadPaths(Arrays.asList(stylesheet, other)));
+    }
+
+    @Test
+    public void selectedWithIncludesAndExcludes() throws Exception {
+        Resource resource = new Resource();
+        assertTrue(resourceFile(resource, "any/file.txt").isSelected());
+        resource.setIncludes(Arrays.asList("**/*.css", "static/"));
+        resource.setExcludes(Collections.singletonList("**/vendor/**"));
+        assertTrue(resourceFile(resource, "META-INF/resources/css/app.css").isSelected());
+        assertTrue(resourceFile(resource, "static/js/app.js").isSelected());
+        assertFalse(resourceFile(resource, "META-INF/resources/js/app.js").isSelected());
+        assertFalse(resourceFile(resource, "META-INF/resources/vendor/lib.css").isSelected());
+    }
+
+    @Test
+    public void servedFromSource() throws Exception {
+        Resource resource = new Resource();
+        assertTrue(resourceFile(resource, "application.yaml").isServedFromSource());
+        resource.setTargetPath("META-INF/resources");
+        assertFalse(resourceFile(resource, "application.yaml").isServedFromSource());
+        resource.setTargetPath(null);
+        resource.setFiltering(true);
+        assertFalse(resourceFile(resource, "application.yaml").isServedFromSource());
+    }
+
+    private ResourceChangeListener.ResourceFile resourceFile(Resource resource, String relativePath) {
+        String path = relativePath.replace('/', File.separatorChar);
+        return new ResourceChangeListener.ResourceFile(resource, path, new File("target/classes", path), false);
+    }
+}